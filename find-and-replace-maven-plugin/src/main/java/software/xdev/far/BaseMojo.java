@@ -15,14 +15,19 @@
  */
 package software.xdev.far;
 
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
@@ -33,6 +38,9 @@ public abstract class BaseMojo<D extends ExecData> extends AbstractMojo
 	@Parameter(defaultValue = "${project}", readonly = true, required = true)
 	protected MavenProject project;
 	
+	@Parameter(defaultValue = "${session}", readonly = true)
+	protected MavenSession session;
+	
 	/**
 	 * The base directory from which to perform the find and replace. This is relative to the location of the pom.
 	 */
@@ -47,8 +55,11 @@ public abstract class BaseMojo<D extends ExecData> extends AbstractMojo
 	
 	/**
 	 * The regex string to find.
+	 * <p>
+	 * Required - except when replacing file contents using <code>rules</code>.
+	 * </p>
 	 */
-	@Parameter(property = "findRegex", required = true)
+	@Parameter(property = "findRegex")
 	protected String findRegex;
 	
 	/**
@@ -74,6 +85,103 @@ public abstract class BaseMojo<D extends ExecData> extends AbstractMojo
 	@Parameter(property = "exclusions")
 	protected String exclusions;
 	
+	/**
+	 * Additional filenames/directory-names to exclude.
+	 * <p>
+	 * Each entry may be prefixed with its syntax:
+	 * </p>
+	 * <ul>
+	 *     <li><code>regex:</code> (default) - a regex that has to be found inside the name</li>
+	 *     <li><code>glob:</code> - a glob pattern that has to match the whole name, e.g. <code>glob:*.yml</code></li>
+	 *     <li><code>prefix:</code> - a literal the name has to start with, e.g. <code>prefix:.</code></li>
+	 * </ul>
+	 * <p>
+	 * All entries - including <code>exclusions</code> - are combined and evaluated together, so that many exclusions
+	 * don't slow down the processing of each file.
+	 * </p>
+	 */
+	@Parameter(property = "exclusionPatterns")
+	protected List<String> exclusionPatterns;
+	
+	/**
+	 * Whether to skip directories that match the <code>exclusions</code> completely.
+	 * <p>
+	 * By default only the name of an excluded directory is left unchanged but its contents are still processed.
+	 * When enabled, excluded directories are not descended into.
+	 * </p>
+	 */
+	@Parameter(property = "pruneExcludedDirectories", defaultValue = "false")
+	protected boolean pruneExcludedDirectories;
+	
+	/**
+	 * Whether symbolic links are followed.
+	 * <p>
+	 * Every physical directory and file is only processed once - even if it can be reached by multiple links - and
+	 * links pointing to one of their parent directories are not followed again.<br/>
+	 * When disabled, symbolic links are ignored.
+	 * </p>
+	 */
+	@Parameter(property = "followLinks", defaultValue = "true")
+	protected boolean followLinks = true;
+	
+	/**
+	 * The maximum depth of directories to descend into, when <code>recursive</code> is enabled.
+	 * <p>
+	 * The files inside the <code>baseDir</code> have a depth of <code>1</code>.
+	 * A negative value means unlimited.
+	 * </p>
+	 */
+	@Parameter(property = "maxDepth", defaultValue = "-1")
+	protected int maxDepth = TraversalOptions.UNLIMITED_DEPTH;
+	
+	/**
+	 * Whether files and directories ignored by <code>.gitignore</code> or <code>.ignore</code> files are skipped.
+	 * <p>
+	 * The ignore files inside the <code>baseDir</code> and its parent directories (up to the root of the git
+	 * repository) are respected. Ignored directories and the <code>.git</code> directory are not descended into.
+	 * </p>
+	 */
+	@Parameter(property = "respectGitIgnore", defaultValue = "false")
+	protected boolean respectGitIgnore;
+	
+	/**
+	 * Caches directory listings, so that multiple executions walking the same directories don't list them again.
+	 * <p>
+	 * Possible values:
+	 * </p>
+	 * <ul>
+	 *     <li><code>none</code> (default) - Nothing is cached</li>
+	 *     <li><code>session</code> - Shared by all executions of the current build, e.g. across modules</li>
+	 *     <li><code>jvm</code> - Shared by all builds inside the same JVM, e.g. when using the Maven Daemon</li>
+	 * </ul>
+	 * <p>
+	 * A cached listing is only used if the modification time of the directory is unchanged.
+	 * </p>
+	 */
+	@Parameter(property = "directoryCache", defaultValue = DirectoryCache.SCOPE_NONE)
+	protected String directoryCache = DirectoryCache.SCOPE_NONE;
+	
+	/**
+	 * Glob patterns of the files to process, e.g. <code>**&#47;*.java</code>.
+	 * <p>
+	 * The patterns are matched against the path relative to the <code>baseDir</code>.<br/>
+	 * If none are specified all files are processed.
+	 * </p>
+	 */
+	@Parameter(property = "includes")
+	protected List<String> includes;
+	
+	/**
+	 * Glob patterns of files and directories to skip, e.g. <code>**&#47;node_modules</code>.
+	 * <p>
+	 * The patterns are matched against the path relative to the <code>baseDir</code>.
+	 * A pattern starting with <code>**&#47;</code> also matches at the top level.<br/>
+	 * Directories that match are neither renamed nor descended into.
+	 * </p>
+	 */
+	@Parameter(property = "excludes")
+	protected List<String> excludes;
+	
 	/**
 	 * Skip execution of the plugin.
 	 */
@@ -86,6 +194,18 @@ public abstract class BaseMojo<D extends ExecData> extends AbstractMojo
 	@Parameter(property = "replaceAll", defaultValue = "true")
 	protected boolean replaceAll = true;
 	
+	/**
+	 * The number of threads that are used to process files concurrently.
+	 * <p>
+	 * <code>0</code> or less uses the number of available processors. <code>1</code> processes all files sequentially.
+	 * </p>
+	 * <p>
+	 * Currently only used when replacing file contents.
+	 * </p>
+	 */
+	@Parameter(property = "parallelism", defaultValue = "0")
+	protected int parallelism;
+	
 	protected final Consumer<D> executeInternal;
 	
 	protected BaseMojo(final Consumer<D> executeInternal)
@@ -105,29 +225,70 @@ public abstract class BaseMojo<D extends ExecData> extends AbstractMojo
 		this.executeInternal.accept(this.enrichData(this.createDefaultData()));
 	}
 	
+	/**
+	 * @return the path - resolved against the location of the pom if it's relative
+	 */
+	protected Path resolvePath(final String path)
+	{
+		final Path p = Paths.get(path);
+		return p.isAbsolute()
+			? p
+			: Paths.get(this.project.getBasedir().getAbsolutePath(), path);
+	}
+	
 	protected ExecData createDefaultData()
 	{
-		final Path baseDirPath = Paths.get(this.baseDir);
 		return new ExecData(
 			this.getLog(),
-			baseDirPath.isAbsolute()
-				? baseDirPath
-				: Paths.get(this.project.getBasedir().getAbsolutePath(), this.baseDir),
+			this.resolvePath(this.baseDir),
 			this.recursive,
 			this.compileFindRegex(),
 			Optional.ofNullable(this.replaceValue).orElse(""),
 			Optional.ofNullable(this.fileMask)
 				.map(s -> List.of(s.split(",")))
 				.orElseGet(List::of),
-			Optional.ofNullable(this.exclusions)
-				.map(Pattern::compile)
-				.map(List::of)
-				.orElseGet(List::of),
-			this.replaceAll);
+			new ExclusionMatcher(Stream.concat(
+					Optional.ofNullable(this.exclusions).map(e -> ExclusionMatcher.REGEX + e).stream(),
+					Optional.ofNullable(this.exclusionPatterns).stream()
+						.flatMap(List::stream)
+						.filter(Objects::nonNull))
+				.toList()),
+			this.replaceAll,
+			this.parallelism > 0 ? this.parallelism : Runtime.getRuntime().availableProcessors(),
+			new TraversalOptions(
+				compileGlobs(this.includes),
+				compileGlobs(this.excludes),
+				this.pruneExcludedDirectories,
+				this.followLinks,
+				this.maxDepth,
+				this.respectGitIgnore,
+				DirectoryCache.forScope(this.directoryCache, this.session)));
+	}
+	
+	protected static List<PathMatcher> compileGlobs(final List<String> globs)
+	{
+		if(globs == null)
+		{
+			return List.of();
+		}
+		
+		final FileSystem fileSystem = FileSystems.getDefault();
+		return globs.stream()
+			.filter(Objects::nonNull)
+			.map(String::trim)
+			.filter(s -> !s.isEmpty())
+			// Like in Ant/Maven a leading **/ should also match at the top level
+			.flatMap(s -> s.startsWith("**/") ? Stream.of(s, s.substring(3)) : Stream.of(s))
+			.map(s -> fileSystem.getPathMatcher("glob:" + s))
+			.toList();
 	}
 	
 	protected Pattern compileFindRegex()
 	{
+		if(this.findRegex == null)
+		{
+			throw new IllegalArgumentException("findRegex is required");
+		}
 		return Pattern.compile(this.findRegex);
 	}
 	
@@ -168,6 +329,11 @@ public abstract class BaseMojo<D extends ExecData> extends AbstractMojo
 		this.exclusions = exclusions;
 	}
 	
+	public void setExclusionPatterns(final List<String> exclusionPatterns)
+	{
+		this.exclusionPatterns = exclusionPatterns;
+	}
+	
 	public void setSkip(final boolean skip)
 	{
 		this.skip = skip;
@@ -177,4 +343,49 @@ public abstract class BaseMojo<D extends ExecData> extends AbstractMojo
 	{
 		this.replaceAll = replaceAll;
 	}
+	
+	public void setParallelism(final int parallelism)
+	{
+		this.parallelism = parallelism;
+	}
+	
+	public void setPruneExcludedDirectories(final boolean pruneExcludedDirectories)
+	{
+		this.pruneExcludedDirectories = pruneExcludedDirectories;
+	}
+	
+	public void setFollowLinks(final boolean followLinks)
+	{
+		this.followLinks = followLinks;
+	}
+	
+	public void setMaxDepth(final int maxDepth)
+	{
+		this.maxDepth = maxDepth;
+	}
+	
+	public void setRespectGitIgnore(final boolean respectGitIgnore)
+	{
+		this.respectGitIgnore = respectGitIgnore;
+	}
+	
+	public void setSession(final MavenSession session)
+	{
+		this.session = session;
+	}
+	
+	public void setDirectoryCache(final String directoryCache)
+	{
+		this.directoryCache = directoryCache;
+	}
+	
+	public void setIncludes(final List<String> includes)
+	{
+		this.includes = includes;
+	}
+	
+	public void setExcludes(final List<String> excludes)
+	{
+		this.excludes = excludes;
+	}
 }
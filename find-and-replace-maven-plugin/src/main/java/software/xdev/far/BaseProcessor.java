@@ -22,10 +22,8 @@ import java.lang.reflect.Method;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
-import java.util.List;
-import java.util.ListIterator;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 
@@ -85,66 +83,69 @@ public abstract class BaseProcessor<D extends ExecData>
 			this.execData.getBaseDirPath().toString(),
 			String.join(", ", this.execData.getFileMasks())));
 		
-		// Load in the files in the base dir
-		final File[] baseDirFiles = new File(this.execData.getBaseDirPath().toUri()).listFiles();
-		if(baseDirFiles == null)
+		final DirectoryWalker walker =
+			new DirectoryWalker(this.execData.getBaseDirPath(), this.execData.getTraversalOptions());
+		try
 		{
-			throw new UncheckedIOException(new IOException(String.format(
+			walker.start();
+		}
+		catch(final IOException e)
+		{
+			throw new UncheckedIOException(String.format(
 				"Unable to list file(s) in baseDir='%s'",
-				this.execData.getBaseDirPath())));
+				this.execData.getBaseDirPath()), e);
 		}
-		final List<File> filesToProcess = new ArrayList<>(Arrays.asList(baseDirFiles));
 		
-		ListIterator<File> iterator = filesToProcess.listIterator();
-		
-		while(iterator.hasNext())
+		while(walker.hasNext())
 		{
-			final File file = iterator.next();
-			
-			// Remove the file from processing
-			iterator.remove();
+			final WalkEntry entry = walker.next();
 			
-			// Perform dir checks
-			if(file.isDirectory())
+			if(entry.attributes().isDirectory())
 			{
-				iterator = this.processDirectory(iterator, file);
+				this.processDirectory(walker, entry);
 			}
-			
-			if(file.isFile())
+			else if(entry.attributes().isRegularFile())
 			{
-				this.processFile(file);
+				this.processFile(walker, entry);
 			}
 		}
 	}
 	
-	protected ListIterator<File> processDirectory(final ListIterator<File> iterator, final File file)
+	protected void processDirectory(final DirectoryWalker walker, final WalkEntry entry)
 	{
-		File workFile = file;
+		if(walker.isExcluded(entry.path()))
+		{
+			// Skip the whole subtree
+			return;
+		}
+		
+		File workFile = entry.path().toFile();
+		final boolean excluded = this.shouldExcludeFile(workFile);
 		
 		// Rename the directory
-		if(this.processDirectoryNames && !this.shouldExcludeFile(workFile))
+		if(this.processDirectoryNames && !excluded)
 		{
 			workFile = this.handleDirectory(workFile);
 		}
 		
-		// If recursive, add child files to iterator
-		if(this.execData.isRecursive())
+		// If recursive, descend into the (possibly renamed) directory
+		if(this.execData.isRecursive()
+			&& !(excluded && this.execData.getTraversalOptions().isPruneExcludedDirectories()))
 		{
-			final File[] filesToAdd = workFile.listFiles();
-			assert filesToAdd != null;
-			for(final File f : filesToAdd)
+			try
+			{
+				walker.descend(entry, workFile.toPath());
+			}
+			catch(final IOException e)
 			{
-				iterator.add(f);
-				iterator.previous();
+				throw new UncheckedIOException(e);
 			}
 		}
-		
-		return iterator;
 	}
 	
 	protected boolean shouldExcludeFile(final File file)
 	{
-		return this.execData.getExclusions().stream().anyMatch(p -> p.matcher(file.getName()).find());
+		return this.execData.getExclusions().matches(file.getName());
 	}
 	
 	protected File handleDirectory(final File file)
@@ -152,16 +153,18 @@ public abstract class BaseProcessor<D extends ExecData>
 		return file;
 	}
 	
-	protected void processFile(final File file)
+	protected void processFile(final DirectoryWalker walker, final WalkEntry entry)
 	{
-		if(this.shouldExcludeFile(file) || !this.shouldProcessFile(file))
+		final File file = entry.path().toFile();
+		if(this.shouldExcludeFile(file) || !walker.isIncluded(entry.path()) || !this.shouldProcessFile(file))
 		{
 			return;
 		}
 		
-		if(this.processFileContents)
+		// Hard links and links to the same file share the same contents, so they are only processed once
+		if(this.processFileContents && walker.markFileVisited(entry))
 		{
-			this.handleFileContents(file);
+			this.handleFileContents(file, entry.attributes());
 		}
 		
 		if(this.processFilenames)
@@ -172,12 +175,7 @@ public abstract class BaseProcessor<D extends ExecData>
 	
 	protected boolean shouldProcessFile(final File file)
 	{
-		if(this.execData.getFileMasks().isEmpty())
-		{
-			return true;
-		}
-		
-		return this.execData.getFileMasks().stream().anyMatch(fileMask -> file.getName().endsWith(fileMask));
+		return this.execData.getFileMaskMatcher().matches(file.getPath());
 	}
 	
 	protected File handleFile(final File file)
@@ -199,6 +197,7 @@ public abstract class BaseProcessor<D extends ExecData>
 			final Path parentDir = filePath.getParent();
 			
 			final Path targetPath = Paths.get(parentDir.toString(), newName);
+			final boolean directory = file.isDirectory();
 			
 			this.execData.getLogger().info(String.format("Renaming %s to %s", oldName, newName));
 			
@@ -210,12 +209,46 @@ public abstract class BaseProcessor<D extends ExecData>
 			{
 				throw new UncheckedIOException(e);
 			}
+			finally
+			{
+				// The listings below a renamed directory contain the old paths
+				this.invalidateCachedListings(filePath, directory);
+				this.invalidateCachedListings(targetPath, directory);
+			}
 		}
 		
 		return file;
 	}
 	
+	/**
+	 * Has to be called when the plugin changed the path, so that no outdated directory listings are used.
+	 */
+	protected void invalidateCachedListings(final Path path)
+	{
+		this.invalidateCachedListings(path, false);
+	}
+	
+	/**
+	 * @param directory if the path is (or was) a directory - then the listings below it are invalidated too
+	 */
+	protected void invalidateCachedListings(final Path path, final boolean directory)
+	{
+		final DirectoryCache cache = this.execData.getTraversalOptions().getDirectoryCache();
+		if(cache != null)
+		{
+			cache.invalidate(path, directory);
+		}
+	}
+	
 	protected void handleFileContents(final File file)
 	{
 	}
+	
+	/**
+	 * @param attributes the attributes read while walking the directory tree - e.g. to avoid reading the size again
+	 */
+	protected void handleFileContents(final File file, final BasicFileAttributes attributes)
+	{
+		this.handleFileContents(file);
+	}
 }
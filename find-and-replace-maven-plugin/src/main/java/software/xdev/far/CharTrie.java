@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import java.util.Arrays;
+
+
+/**
+ * A trie of literal prefixes - or if reversed - of literal suffixes.
+ * <p>
+ * Lookups don't allocate and only walk the input once, regardless of how many keys are stored.
+ * </p>
+ */
+final class CharTrie
+{
+	private final Node root = new Node();
+	private final boolean reversed;
+	private boolean empty = true;
+	
+	CharTrie(final boolean reversed)
+	{
+		this.reversed = reversed;
+	}
+	
+	void add(final CharSequence key)
+	{
+		Node node = this.root;
+		for(int i = 0; i < key.length(); i++)
+		{
+			node = node.getOrCreateChild(key.charAt(this.reversed ? key.length() - 1 - i : i));
+		}
+		node.terminal = true;
+		this.empty = false;
+	}
+	
+	boolean isEmpty()
+	{
+		return this.empty;
+	}
+	
+	boolean containsEmptyKey()
+	{
+		return this.root.terminal;
+	}
+	
+	/**
+	 * @return if any key is a prefix (or for reversed tries: a suffix) of the given range
+	 */
+	boolean matches(final CharSequence s, final int from, final int to)
+	{
+		Node node = this.root;
+		if(node.terminal)
+		{
+			return true;
+		}
+		
+		for(int i = 0; i < to - from; i++)
+		{
+			node = node.getChild(s.charAt(this.reversed ? to - 1 - i : from + i));
+			if(node == null)
+			{
+				return false;
+			}
+			if(node.terminal)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	static final class Node
+	{
+		private static final char[] NO_KEYS = new char[0];
+		private static final Node[] NO_CHILDREN = new Node[0];
+		
+		// Sorted, so that lookups can use a binary search
+		private char[] keys = NO_KEYS;
+		private Node[] children = NO_CHILDREN;
+		private boolean terminal;
+		
+		Node getChild(final char c)
+		{
+			final int index = Arrays.binarySearch(this.keys, c);
+			return index >= 0 ? this.children[index] : null;
+		}
+		
+		Node getOrCreateChild(final char c)
+		{
+			final int index = Arrays.binarySearch(this.keys, c);
+			if(index >= 0)
+			{
+				return this.children[index];
+			}
+			
+			final int insertAt = -index - 1;
+			final Node child = new Node();
+			
+			final char[] newKeys = new char[this.keys.length + 1];
+			System.arraycopy(this.keys, 0, newKeys, 0, insertAt);
+			System.arraycopy(this.keys, insertAt, newKeys, insertAt + 1, this.keys.length - insertAt);
+			newKeys[insertAt] = c;
+			
+			final Node[] newChildren = new Node[this.children.length + 1];
+			System.arraycopy(this.children, 0, newChildren, 0, insertAt);
+			System.arraycopy(this.children, insertAt, newChildren, insertAt + 1, this.children.length - insertAt);
+			newChildren[insertAt] = child;
+			
+			this.keys = newKeys;
+			this.children = newChildren;
+			return child;
+		}
+	}
+}
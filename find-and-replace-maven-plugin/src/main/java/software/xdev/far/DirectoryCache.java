@@ -0,0 +1,231 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Caches directory listings (including the attributes of the entries), so that multiple executions walking the same
+ * directories don't need to list them again.
+ * <p>
+ * A listing is only reused if the modification time of the directory didn't change. Listings of directories that
+ * were modified shortly before they were listed are not cached, as further changes within the resolution of the
+ * modification time can't be detected ("racy" modification time).<br/>
+ * Changes made by the plugin itself are reported using {@link #invalidate(Path)}.
+ * </p>
+ * <p>
+ * Note that changes to the contents of a file don't change the modification time of its directory, so the cached
+ * size and modification time of a file may be outdated if it is modified in place by something else.
+ * </p>
+ */
+public class DirectoryCache
+{
+	public static final String SCOPE_NONE = "none";
+	public static final String SCOPE_SESSION = "session";
+	public static final String SCOPE_JVM = "jvm";
+	
+	public static final int DEFAULT_MAX_DIRECTORIES = 10_000;
+	
+	private static final int INITIAL_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.75f;
+	
+	// Coarsest resolution of common file systems (FAT)
+	protected static final long RACY_INTERVAL_MILLIS = 2_000;
+	
+	private static final DirectoryCache JVM_CACHE = new DirectoryCache(DEFAULT_MAX_DIRECTORIES);
+	// Weak so that the cache is released together with the session (e.g. when running inside a daemon)
+	private static final Map<Object, DirectoryCache> SESSION_CACHES = new WeakHashMap<>();
+	private static final ReentrantLock SESSION_CACHES_LOCK = new ReentrantLock();
+	
+	private final Map<Key, Listing> listings;
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	public DirectoryCache(final int maxDirectories)
+	{
+		// Access order: Evicts the least recently used listing
+		this.listings = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Key, Listing> eldest)
+			{
+				return this.size() > maxDirectories;
+			}
+		};
+	}
+	
+	/**
+	 * @param scope   one of {@link #SCOPE_NONE}, {@link #SCOPE_SESSION} or {@link #SCOPE_JVM}
+	 * @param session the current session (used as key of session scoped caches)
+	 * @return the cache or <code>null</code> if nothing should be cached
+	 */
+	public static DirectoryCache forScope(final String scope, final Object session)
+	{
+		if(scope == null || SCOPE_NONE.equalsIgnoreCase(scope))
+		{
+			return null;
+		}
+		if(SCOPE_JVM.equalsIgnoreCase(scope))
+		{
+			return JVM_CACHE;
+		}
+		if(SCOPE_SESSION.equalsIgnoreCase(scope))
+		{
+			if(session == null)
+			{
+				return null;
+			}
+			SESSION_CACHES_LOCK.lock();
+			try
+			{
+				return SESSION_CACHES.computeIfAbsent(session, s -> new DirectoryCache(DEFAULT_MAX_DIRECTORIES));
+			}
+			finally
+			{
+				SESSION_CACHES_LOCK.unlock();
+			}
+		}
+		throw new IllegalArgumentException("Unknown directory cache scope: " + scope);
+	}
+	
+	/**
+	 * @param reader used to list the directory if there is no valid cached listing
+	 */
+	public List<CachedEntry> list(final Path directory, final boolean followLinks, final DirectoryReader reader)
+		throws IOException
+	{
+		final Key key = new Key(directory, followLinks);
+		final FileTime modified = Files.readAttributes(directory, BasicFileAttributes.class).lastModifiedTime();
+		
+		this.lock.lock();
+		try
+		{
+			final Listing cached = this.listings.get(key);
+			if(cached != null && cached.modified().equals(modified))
+			{
+				return cached.entries();
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		
+		final long listedAt = System.currentTimeMillis();
+		final List<CachedEntry> entries = Collections.unmodifiableList(reader.read(directory));
+		this.lock.lock();
+		try
+		{
+			if(listedAt - modified.toMillis() > RACY_INTERVAL_MILLIS)
+			{
+				this.listings.put(key, new Listing(modified, entries));
+			}
+			else
+			{
+				this.listings.remove(key);
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+		return entries;
+	}
+	
+	/**
+	 * Removes the listings of the path and its parent.
+	 */
+	public void invalidate(final Path path)
+	{
+		this.invalidate(path, false);
+	}
+	
+	/**
+	 * Removes the listings of the path, its parent and - if the path is (or was, e.g. before it was renamed) a
+	 * directory - all directories below it.
+	 */
+	public void invalidate(final Path path, final boolean directory)
+	{
+		this.lock.lock();
+		try
+		{
+			// Looked up directly: Called for each changed file, which must not scan all listings
+			this.removeListings(path.getParent());
+			this.removeListings(path);
+			if(directory)
+			{
+				this.listings.keySet().removeIf(key -> key.directory().startsWith(path));
+			}
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	
+	protected void removeListings(final Path directory)
+	{
+		if(directory != null)
+		{
+			this.listings.remove(new Key(directory, true));
+			this.listings.remove(new Key(directory, false));
+		}
+	}
+	
+	public int size()
+	{
+		this.lock.lock();
+		try
+		{
+			return this.listings.size();
+		}
+		finally
+		{
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Reads the entries of a directory.
+	 */
+	@FunctionalInterface
+	public interface DirectoryReader
+	{
+		List<CachedEntry> read(Path directory) throws IOException;
+	}
+	
+	public record CachedEntry(Path path, BasicFileAttributes attributes)
+	{
+	}
+	
+	protected record Key(Path directory, boolean followLinks)
+	{
+	}
+	
+	protected record Listing(FileTime modified, List<CachedEntry> entries)
+	{
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+
+/**
+ * Walks the directory tree depth first.
+ * <p>
+ * The directories are only descended into when requested by calling {@link #descend(WalkEntry, Path)}, so that e.g.
+ * a directory can be renamed before its entries are listed.<br/>
+ * The attributes of each entry are read exactly once. A directory is completely read before any of its entries is
+ * returned, as processing creates and renames entries inside it.
+ * </p>
+ */
+public class DirectoryWalker
+{
+	private final Path baseDirPath;
+	private final TraversalOptions options;
+	private final VisitedFiles visited = new VisitedFiles();
+	// Used as a stack so that the entries of a directory are returned directly after it
+	private final Deque<WalkEntry> pending = new ArrayDeque<>();
+	
+	public DirectoryWalker(final Path baseDirPath, final TraversalOptions options)
+	{
+		this.baseDirPath = baseDirPath;
+		this.options = options;
+	}
+	
+	/**
+	 * Lists the entries of the base directory.
+	 */
+	public void start() throws IOException
+	{
+		final BasicFileAttributes attributes = this.readAttributes(this.baseDirPath);
+		if(attributes != null)
+		{
+			this.visited.markDirectory(attributes);
+		}
+		this.listDirectory(
+			this.baseDirPath,
+			1,
+			this.options.isRespectGitIgnore() ? IgnoreRules.loadWithParents(this.baseDirPath) : IgnoreRules.NONE);
+	}
+	
+	public boolean hasNext()
+	{
+		return !this.pending.isEmpty();
+	}
+	
+	public WalkEntry next()
+	{
+		return this.pending.pop();
+	}
+	
+	/**
+	 * Lists the entries of a directory, unless the maximum depth is reached or the same physical directory was already
+	 * visited (e.g. a link to a parent directory).
+	 *
+	 * @param directory the current path of the entry's directory, which may differ if it was renamed
+	 */
+	public void descend(final WalkEntry entry, final Path directory) throws IOException
+	{
+		if(this.options.canDescend(entry.depth()) && this.visited.markDirectory(entry.attributes()))
+		{
+			this.listDirectory(
+				directory,
+				entry.depth() + 1,
+				this.options.isRespectGitIgnore()
+					? IgnoreRules.load(entry.ignoreRules(), directory)
+					: entry.ignoreRules());
+		}
+	}
+	
+	/**
+	 * @return <code>false</code> if the same physical file was already visited, e.g. through a hard link
+	 */
+	public boolean markFileVisited(final WalkEntry entry)
+	{
+		return this.visited.markFile(entry.attributes());
+	}
+	
+	/**
+	 * @return if the path matches one of the <code>excludes</code>
+	 */
+	public boolean isExcluded(final Path path)
+	{
+		return this.options.hasPathMatchers() && this.options.isExcluded(this.baseDirPath.relativize(path));
+	}
+	
+	/**
+	 * @return if the path matches the <code>includes</code> and none of the <code>excludes</code>
+	 */
+	public boolean isIncluded(final Path path)
+	{
+		if(!this.options.hasPathMatchers())
+		{
+			return true;
+		}
+		
+		final Path relativePath = this.baseDirPath.relativize(path);
+		return this.options.isIncluded(relativePath) && !this.options.isExcluded(relativePath);
+	}
+	
+	/**
+	 * @param ignoreRules the ignore rules of the directory; ignored entries are skipped right away
+	 */
+	protected void listDirectory(final Path directory, final int depth, final IgnoreRules ignoreRules)
+		throws IOException
+	{
+		final DirectoryCache cache = this.options.getDirectoryCache();
+		if(cache != null)
+		{
+			for(final DirectoryCache.CachedEntry entry
+				: cache.list(directory, this.options.isFollowLinks(), this::readDirectory))
+			{
+				this.push(entry.path(), entry.attributes(), depth, ignoreRules);
+			}
+			return;
+		}
+		
+		try(final DirectoryStream<Path> stream = Files.newDirectoryStream(directory))
+		{
+			for(final Path path : stream)
+			{
+				this.push(path, this.readAttributes(path), depth, ignoreRules);
+			}
+		}
+	}
+	
+	protected List<DirectoryCache.CachedEntry> readDirectory(final Path directory) throws IOException
+	{
+		final List<DirectoryCache.CachedEntry> entries = new ArrayList<>();
+		try(final DirectoryStream<Path> stream = Files.newDirectoryStream(directory))
+		{
+			for(final Path path : stream)
+			{
+				final BasicFileAttributes attributes = this.readAttributes(path);
+				if(attributes != null)
+				{
+					entries.add(new DirectoryCache.CachedEntry(path, attributes));
+				}
+			}
+		}
+		return entries;
+	}
+	
+	/**
+	 * @param ignoreRules the ignore rules of the directory; ignored entries are skipped right away
+	 */
+	protected void push(
+		final Path path,
+		final BasicFileAttributes attributes,
+		final int depth,
+		final IgnoreRules ignoreRules)
+	{
+		if(attributes != null && !this.isIgnored(path, attributes, ignoreRules))
+		{
+			this.pending.push(new WalkEntry(path, attributes, depth, ignoreRules));
+		}
+	}
+	
+	protected boolean isIgnored(
+		final Path path,
+		final BasicFileAttributes attributes,
+		final IgnoreRules ignoreRules)
+	{
+		if(!this.options.isRespectGitIgnore())
+		{
+			return false;
+		}
+		if(attributes.isDirectory() && IgnoreRules.GIT_DIR.equals(path.getFileName().toString()))
+		{
+			return true;
+		}
+		return ignoreRules.isIgnored(path, attributes.isDirectory());
+	}
+	
+	protected BasicFileAttributes readAttributes(final Path path) throws IOException
+	{
+		try
+		{
+			// When links are not followed, the attributes of a link are neither a directory nor a regular file
+			return this.options.isFollowLinks()
+				? Files.readAttributes(path, BasicFileAttributes.class)
+				: Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		}
+		catch(final NoSuchFileException e)
+		{
+			// e.g. a broken symbolic link
+			return null;
+		}
+	}
+}
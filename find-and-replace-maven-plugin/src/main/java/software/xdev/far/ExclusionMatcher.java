@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+
+/**
+ * Checks file and directory names against any number of exclusions.
+ * <p>
+ * Each exclusion may be prefixed with its syntax:
+ * </p>
+ * <ul>
+ *     <li><code>regex:</code> (default) - a regex that has to be found inside the name</li>
+ *     <li><code>glob:</code> - a glob pattern that has to match the whole name</li>
+ *     <li><code>prefix:</code> - a literal that the name has to start with</li>
+ * </ul>
+ * <p>
+ * Literal names, prefixes and suffixes (e.g. from globs like <code>*.yml</code>) are looked up in hash/trie indexes.
+ * All remaining regexes and globs are combined into a single pattern, so that every name is only matched once no
+ * matter how many exclusions are configured.
+ * </p>
+ */
+public class ExclusionMatcher
+{
+	public static final String REGEX = "regex:";
+	public static final String GLOB = "glob:";
+	public static final String PREFIX = "prefix:";
+	
+	// Back references (group numbers would change), named groups (names must be unique), quotes (an unterminated
+	// \Q would also quote the rest) and comments (a comment would hide the rest)
+	private static final Pattern NOT_COMBINABLE =
+		Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]|\\\\Q|\\(\\?[a-zA-Z]*x");
+	
+	private final Set<String> names = new HashSet<>();
+	private final CharTrie prefixes = new CharTrie(false);
+	private final CharTrie suffixes = new CharTrie(true);
+	private final Pattern combined;
+	// Patterns that can't be combined with the others
+	private final List<Pattern> separate = new ArrayList<>();
+	private final boolean empty;
+	
+	public ExclusionMatcher(final Collection<String> exclusions)
+	{
+		final List<String> combinable = new ArrayList<>();
+		for(final String exclusion : exclusions)
+		{
+			if(exclusion.startsWith(GLOB))
+			{
+				this.addGlob(exclusion.substring(GLOB.length()), combinable);
+			}
+			else if(exclusion.startsWith(PREFIX))
+			{
+				this.prefixes.add(exclusion.substring(PREFIX.length()));
+			}
+			else
+			{
+				this.addRegex(
+					exclusion.startsWith(REGEX) ? exclusion.substring(REGEX.length()) : exclusion,
+					combinable);
+			}
+		}
+		
+		this.combined = this.combine(combinable);
+		this.empty = exclusions.isEmpty();
+	}
+	
+	private Pattern combine(final List<String> combinable)
+	{
+		if(combinable.isEmpty())
+		{
+			return null;
+		}
+		try
+		{
+			return Pattern.compile(String.join("|", combinable));
+		}
+		catch(final PatternSyntaxException e)
+		{
+			// Each one is valid on its own but they conflict with each other - match them one by one
+			combinable.forEach(regex -> this.separate.add(Pattern.compile(regex)));
+			return null;
+		}
+	}
+	
+	private void addRegex(final String regex, final List<String> combinable)
+	{
+		if(NOT_COMBINABLE.matcher(regex).find())
+		{
+			this.separate.add(Pattern.compile(regex));
+			return;
+		}
+		// Validate each regex on its own for a better error message
+		Pattern.compile(regex);
+		combinable.add("(?:" + regex + ")");
+	}
+	
+	private void addGlob(final String glob, final List<String> combinable)
+	{
+		final int lastStar = glob.lastIndexOf('*');
+		if(Globs.isLiteral(glob))
+		{
+			this.names.add(glob);
+		}
+		else if(lastStar == 0 && Globs.isLiteral(glob.substring(1)))
+		{
+			this.suffixes.add(glob.substring(1));
+		}
+		else if(lastStar == glob.length() - 1 && Globs.isLiteral(glob.substring(0, lastStar)))
+		{
+			this.prefixes.add(glob.substring(0, lastStar));
+		}
+		else
+		{
+			combinable.add("^(?:" + Globs.toRegex(glob, true) + ")$");
+		}
+	}
+	
+	public boolean isEmpty()
+	{
+		return this.empty;
+	}
+	
+	public boolean matches(final String name)
+	{
+		if(this.empty)
+		{
+			return false;
+		}
+		
+		return this.names.contains(name)
+			|| this.prefixes.matches(name, 0, name.length())
+			|| this.suffixes.matches(name, 0, name.length())
+			|| this.combined != null && this.combined.matcher(name).find()
+			|| this.separate.stream().anyMatch(p -> p.matcher(name).find());
+	}
+}
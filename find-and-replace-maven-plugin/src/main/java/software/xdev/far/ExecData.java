@@ -30,8 +30,11 @@ public class ExecData
 	private final Pattern findRegex;
 	private final String replaceValue;
 	private final List<String> fileMasks;
-	private final List<Pattern> exclusions;
+	private final FileMaskMatcher fileMaskMatcher;
+	private final ExclusionMatcher exclusions;
 	private final boolean replaceAll;
+	private final int parallelism;
+	private final TraversalOptions traversalOptions;
 	
 	public ExecData(final ExecData other)
 	{
@@ -43,7 +46,9 @@ public class ExecData
 			other.getReplaceValue(),
 			other.getFileMasks(),
 			other.getExclusions(),
-			other.isReplaceAll());
+			other.isReplaceAll(),
+			other.getParallelism(),
+			other.getTraversalOptions());
 	}
 	
 	public ExecData(
@@ -53,8 +58,10 @@ public class ExecData
 		final Pattern findRegex,
 		final String replaceValue,
 		final List<String> fileMasks,
-		final List<Pattern> exclusions,
-		final boolean replaceAll)
+		final ExclusionMatcher exclusions,
+		final boolean replaceAll,
+		final int parallelism,
+		final TraversalOptions traversalOptions)
 	{
 		this.logger = logger;
 		this.baseDirPath = baseDirPath;
@@ -62,8 +69,11 @@ public class ExecData
 		this.findRegex = findRegex;
 		this.replaceValue = replaceValue;
 		this.fileMasks = fileMasks;
+		this.fileMaskMatcher = new FileMaskMatcher(fileMasks);
 		this.exclusions = exclusions;
 		this.replaceAll = replaceAll;
+		this.parallelism = parallelism;
+		this.traversalOptions = traversalOptions;
 	}
 	
 	public Log getLogger()
@@ -96,7 +106,12 @@ public class ExecData
 		return this.fileMasks;
 	}
 	
-	public List<Pattern> getExclusions()
+	public FileMaskMatcher getFileMaskMatcher()
+	{
+		return this.fileMaskMatcher;
+	}
+	
+	public ExclusionMatcher getExclusions()
 	{
 		return this.exclusions;
 	}
@@ -105,4 +120,14 @@ public class ExecData
 	{
 		return this.replaceAll;
 	}
+	
+	public int getParallelism()
+	{
+		return this.parallelism;
+	}
+	
+	public TraversalOptions getTraversalOptions()
+	{
+		return this.traversalOptions;
+	}
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import java.io.File;
+import java.util.Collection;
+
+
+/**
+ * Checks if a file name ends with any of the configured file masks.
+ * <p>
+ * All masks are compiled into a single trie of reversed suffixes. A lookup walks the name backwards once and doesn't
+ * allocate, regardless of how many masks are configured.
+ * </p>
+ */
+public class FileMaskMatcher
+{
+	private final CharTrie suffixes = new CharTrie(true);
+	private final boolean matchAll;
+	
+	public FileMaskMatcher(final Collection<String> fileMasks)
+	{
+		fileMasks.forEach(this.suffixes::add);
+		
+		// No masks or an empty mask: Everything matches
+		this.matchAll = this.suffixes.isEmpty() || this.suffixes.containsEmptyKey();
+	}
+	
+	/**
+	 * @param path the name or path of the file; only the part after the last separator is checked
+	 */
+	public boolean matches(final CharSequence path)
+	{
+		return this.matchAll || this.suffixes.matches(path, nameStart(path), path.length());
+	}
+	
+	static int nameStart(final CharSequence path)
+	{
+		for(int i = path.length() - 1; i >= 0; i--)
+		{
+			final char c = path.charAt(i);
+			if(c == '/' || c == File.separatorChar)
+			{
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+}
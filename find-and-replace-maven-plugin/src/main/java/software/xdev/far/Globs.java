@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+/**
+ * Translates glob patterns into regular expressions, so that they can be combined with other expressions.
+ * <p>
+ * Supported syntax: <code>*</code> (anything except <code>/</code>), <code>**</code> (anything),
+ * <code>?</code>, <code>[...]</code> and <code>[!...]</code>, <code>{a,b}</code> (optional) and
+ * <code>\</code> as escape character.
+ * </p>
+ */
+public final class Globs
+{
+	private static final String GLOB_META_CHARS = "*?[{\\";
+	private static final String REGEX_META_CHARS = ".^$+|()[]{}*?\\";
+	
+	private Globs()
+	{
+	}
+	
+	/**
+	 * @return <code>true</code> if the glob doesn't contain any wildcards
+	 */
+	public static boolean isLiteral(final String glob)
+	{
+		return glob.chars().noneMatch(c -> GLOB_META_CHARS.indexOf(c) >= 0);
+	}
+	
+	public static String toRegex(final String glob, final boolean supportBraces)
+	{
+		return new Translator(glob, supportBraces).translate();
+	}
+	
+	private static final class Translator
+	{
+		private final String glob;
+		private final boolean supportBraces;
+		private int braceDepth;
+		
+		Translator(final String glob, final boolean supportBraces)
+		{
+			this.glob = glob;
+			this.supportBraces = supportBraces;
+		}
+		
+		String translate()
+		{
+			final StringBuilder sb = new StringBuilder(this.glob.length() * 2);
+			for(int i = 0; i < this.glob.length(); i++)
+			{
+				final char c = this.glob.charAt(i);
+				switch(c)
+				{
+					case '*' -> i = this.appendStar(i, sb);
+					case '?' -> sb.append("[^/]");
+					case '[' -> i = appendCharClass(this.glob, i, sb);
+					case '\\' -> i = this.appendEscaped(i, sb);
+					case '{', '}', ',' -> this.appendBrace(c, sb);
+					default -> appendLiteral(c, sb);
+				}
+			}
+			// Unclosed braces
+			sb.append(")".repeat(this.braceDepth));
+			return sb.toString();
+		}
+		
+		private int appendStar(final int i, final StringBuilder sb)
+		{
+			if(i + 1 < this.glob.length() && this.glob.charAt(i + 1) == '*')
+			{
+				sb.append(".*");
+				return i + 1;
+			}
+			sb.append("[^/]*");
+			return i;
+		}
+		
+		private int appendEscaped(final int i, final StringBuilder sb)
+		{
+			if(i + 1 < this.glob.length())
+			{
+				appendLiteral(this.glob.charAt(i + 1), sb);
+			}
+			return i + 1;
+		}
+		
+		private void appendBrace(final char c, final StringBuilder sb)
+		{
+			if(c == '{' && this.supportBraces)
+			{
+				sb.append("(?:");
+				this.braceDepth++;
+			}
+			else if(c == '}' && this.braceDepth > 0)
+			{
+				sb.append(')');
+				this.braceDepth--;
+			}
+			else if(c == ',' && this.braceDepth > 0)
+			{
+				sb.append('|');
+			}
+			else
+			{
+				appendLiteral(c, sb);
+			}
+		}
+	}
+	
+	private static int appendCharClass(final String glob, final int start, final StringBuilder sb)
+	{
+		final int end = glob.indexOf(']', start + 2);
+		if(end < 0)
+		{
+			appendLiteral('[', sb);
+			return start;
+		}
+		
+		sb.append('[');
+		int i = start + 1;
+		if(glob.charAt(i) == '!' || glob.charAt(i) == '^')
+		{
+			sb.append('^');
+			i++;
+		}
+		for(; i < end; i++)
+		{
+			final char c = glob.charAt(i);
+			if(c == '\\' || c == '[' || c == '&' || c == '^')
+			{
+				sb.append('\\');
+			}
+			sb.append(c);
+		}
+		sb.append(']');
+		return end;
+	}
+	
+	private static void appendLiteral(final char c, final StringBuilder sb)
+	{
+		if(REGEX_META_CHARS.indexOf(c) >= 0)
+		{
+			sb.append('\\');
+		}
+		sb.append(c);
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+
+/**
+ * The rules of the <code>.gitignore</code>/<code>.ignore</code> files of a directory and all its parents.
+ * <p>
+ * Each instance only contains the rules of a single directory and links to the rules of the parent directories, so
+ * that the rules of a directory are only read and compiled once and shared by all its entries.<br/>
+ * Rules of deeper directories take precedence and inside a directory the last matching rule wins - like in git.
+ * </p>
+ */
+public final class IgnoreRules
+{
+	public static final List<String> FILE_NAMES = List.of(".gitignore", ".ignore");
+	public static final String GIT_DIR = ".git";
+	
+	public static final IgnoreRules NONE = new IgnoreRules(null, null, List.of());
+	
+	private static final String ANY_DIRECTORIES = "(?:.*/)?";
+	
+	private final IgnoreRules parent;
+	private final Path directory;
+	private final List<Rule> rules;
+	
+	private IgnoreRules(final IgnoreRules parent, final Path directory, final List<Rule> rules)
+	{
+		this.parent = parent;
+		this.directory = directory;
+		this.rules = rules;
+	}
+	
+	/**
+	 * Loads the rules of the directory.
+	 *
+	 * @return the parent rules if the directory contains no rules
+	 */
+	public static IgnoreRules load(final IgnoreRules parent, final Path directory) throws IOException
+	{
+		final List<Rule> rules = new ArrayList<>();
+		for(final String fileName : FILE_NAMES)
+		{
+			final Path file = directory.resolve(fileName);
+			if(Files.isRegularFile(file))
+			{
+				// Decoded leniently: Malformed input is replaced instead of failing
+				new String(Files.readAllBytes(file), StandardCharsets.UTF_8).lines()
+					.map(IgnoreRules::parse)
+					.filter(Objects::nonNull)
+					.forEach(rules::add);
+			}
+		}
+		return rules.isEmpty() ? parent : new IgnoreRules(parent, directory, List.copyOf(rules));
+	}
+	
+	/**
+	 * Loads the rules of the directory and of all its parents up to the root of the git repository.
+	 * <p>
+	 * If the directory is not inside a git repository, only the rules of the directory itself are loaded.
+	 * </p>
+	 */
+	public static IgnoreRules loadWithParents(final Path directory) throws IOException
+	{
+		final List<Path> directories = new ArrayList<>();
+		for(Path current = directory; current != null; current = current.getParent())
+		{
+			directories.add(0, current);
+			if(Files.exists(current.resolve(GIT_DIR)))
+			{
+				break;
+			}
+		}
+		if(!Files.exists(directories.get(0).resolve(GIT_DIR)))
+		{
+			return load(NONE, directory);
+		}
+		
+		IgnoreRules rules = NONE;
+		for(final Path current : directories)
+		{
+			rules = load(rules, current);
+		}
+		return rules;
+	}
+	
+	public boolean isIgnored(final Path path, final boolean isDirectory)
+	{
+		for(IgnoreRules current = this; current != null; current = current.parent)
+		{
+			if(current.rules.isEmpty())
+			{
+				continue;
+			}
+			
+			final String relativePath = toSlashSeparated(current.directory.relativize(path));
+			for(int i = current.rules.size() - 1; i >= 0; i--)
+			{
+				final Rule rule = current.rules.get(i);
+				if((!rule.directoryOnly() || isDirectory) && rule.pattern().matcher(relativePath).matches())
+				{
+					return !rule.negated();
+				}
+			}
+		}
+		return false;
+	}
+	
+	private static String toSlashSeparated(final Path path)
+	{
+		final String s = path.toString();
+		return File.separatorChar == '/' ? s : s.replace(File.separatorChar, '/');
+	}
+	
+	/**
+	 * Parses a line of an ignore file.
+	 *
+	 * @return the rule or <code>null</code> if the line is blank or a comment
+	 */
+	static Rule parse(final String line)
+	{
+		String pattern = stripTrailingSpaces(line);
+		if(pattern.isEmpty() || pattern.charAt(0) == '#')
+		{
+			return null;
+		}
+		
+		final boolean negated = pattern.charAt(0) == '!';
+		if(negated)
+		{
+			pattern = pattern.substring(1);
+		}
+		final boolean directoryOnly = pattern.endsWith("/");
+		if(directoryOnly)
+		{
+			pattern = pattern.substring(0, pattern.length() - 1);
+		}
+		if(pattern.isEmpty())
+		{
+			return null;
+		}
+		
+		// A pattern with a slash (at the beginning or in the middle) is relative to the directory of the ignore file,
+		// otherwise it matches at any level below it
+		final boolean anchored = pattern.indexOf('/') >= 0;
+		if(pattern.charAt(0) == '/')
+		{
+			pattern = pattern.substring(1);
+		}
+		
+		// "**" is translated to ".*" - literal dots are always escaped
+		String regex = Globs.toRegex(pattern, false).replace("/.*/", "/" + ANY_DIRECTORIES);
+		if(regex.startsWith(".*/"))
+		{
+			regex = ANY_DIRECTORIES + regex.substring(3);
+		}
+		else if(!anchored)
+		{
+			regex = ANY_DIRECTORIES + regex;
+		}
+		return new Rule(Pattern.compile(regex), negated, directoryOnly);
+	}
+	
+	private static String stripTrailingSpaces(final String line)
+	{
+		int end = line.length();
+		// Trailing spaces are ignored unless they are escaped
+		while(end > 0 && line.charAt(end - 1) == ' ' && (end < 2 || line.charAt(end - 2) != '\\'))
+		{
+			end--;
+		}
+		return line.substring(0, end);
+	}
+	
+	record Rule(Pattern pattern, boolean negated, boolean directoryOnly)
+	{
+	}
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+
+/**
+ * A pipeline consisting of three stages:
+ * <ol>
+ *     <li>The submitting thread (e.g. the one walking the directories) produces tasks</li>
+ *     <li>A pool of workers executes the tasks concurrently</li>
+ *     <li>A single committer thread commits the results in the order in which the tasks were submitted</li>
+ * </ol>
+ * <p>
+ * The stages are connected by a bounded queue, so submitting blocks when the workers or the committer fall behind.
+ * Because results are committed in submission order, e.g. log output stays deterministic.
+ * </p>
+ * <p>
+ * The first failure - of a task or a commit - stops the pipeline: Tasks that haven't started yet are skipped, results
+ * that were not committed yet are discarded and the exception is rethrown on the submitting thread.
+ * </p>
+ */
+public class OrderedPipeline implements AutoCloseable
+{
+	private static final int IN_FLIGHT_PER_THREAD = 4;
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 60;
+	private static final long ENQUEUE_POLL_MILLIS = 500;
+	
+	private static final Stage SKIPPED = new Stage(() -> {
+	}, () -> {
+	});
+	private static final Future<Stage> END = CompletableFuture.completedFuture(SKIPPED);
+	
+	private final ExecutorService workers;
+	private final BlockingQueue<Future<Stage>> commitQueue;
+	private final Thread committer;
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	
+	public OrderedPipeline(final int parallelism)
+	{
+		this(createFixedThreadPool(parallelism), parallelism * IN_FLIGHT_PER_THREAD);
+	}
+	
+	public OrderedPipeline(final ExecutorService workers, final int capacity)
+	{
+		this.workers = workers;
+		this.commitQueue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+		
+		this.committer = new Thread(this::runCommitter, "far-committer");
+		this.committer.setDaemon(true);
+		this.committer.start();
+	}
+	
+	protected static ExecutorService createFixedThreadPool(final int parallelism)
+	{
+		final AtomicInteger threadCounter = new AtomicInteger();
+		return Executors.newFixedThreadPool(parallelism, r -> {
+			final Thread thread = new Thread(r, "far-worker-" + threadCounter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	/**
+	 * Creates an executor that starts a new virtual thread for each task.
+	 *
+	 * @return the executor or empty if the current Java runtime doesn't support virtual threads (requires Java 21+)
+	 */
+	public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor()
+	{
+		try
+		{
+			// Looked up reflectively as the plugin is compiled for Java 17
+			return Optional.of((ExecutorService)Executors.class
+				.getMethod("newVirtualThreadPerTaskExecutor")
+				.invoke(null));
+		}
+		catch(final ReflectiveOperationException e)
+		{
+			return Optional.empty();
+		}
+	}
+	
+	/**
+	 * @param task    executed by a worker
+	 * @param commit  called by the committer with the result of the task
+	 * @param discard called with the result of the task if it can't be committed because the pipeline was stopped
+	 */
+	public <T> void submit(final Callable<T> task, final Consumer<T> commit, final Consumer<T> discard)
+	{
+		this.throwIfFailed();
+		
+		final Future<Stage> future = this.workers.submit(() -> {
+			// Fail fast: Don't start any new work once something went wrong
+			if(this.failure.get() != null)
+			{
+				return SKIPPED;
+			}
+			try
+			{
+				final T result = task.call();
+				return new Stage(() -> commit.accept(result), () -> discard.accept(result));
+			}
+			catch(final Exception e)
+			{
+				this.failure.compareAndSet(null, e);
+				throw e;
+			}
+		});
+		
+		this.enqueue(future);
+	}
+	
+	/**
+	 * Waits until all submitted tasks are executed and committed.
+	 */
+	public void finish()
+	{
+		this.enqueue(END);
+		this.joinCommitter();
+		this.throwIfFailed();
+	}
+	
+	protected void enqueue(final Future<Stage> future)
+	{
+		try
+		{
+			// Blocks when the queue is full - but not forever if the committer is gone
+			while(!this.commitQueue.offer(future, ENQUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS))
+			{
+				if(!this.committer.isAlive())
+				{
+					this.throwIfFailed();
+					throw new IllegalStateException("The committer stopped unexpectedly");
+				}
+			}
+		}
+		catch(final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the pipeline", e);
+		}
+	}
+	
+	@SuppressWarnings({"checkstyle:IllegalCatch", "PMD.AvoidCatchingThrowable"})
+	protected void runCommitter()
+	{
+		while(true)
+		{
+			final Stage stage;
+			try
+			{
+				final Future<Stage> future = this.commitQueue.take();
+				if(future == END)
+				{
+					return;
+				}
+				stage = future.get();
+			}
+			catch(final ExecutionException e)
+			{
+				this.failure.compareAndSet(null, e.getCause());
+				continue;
+			}
+			catch(final InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				this.failure.compareAndSet(null, e);
+				return;
+			}
+			
+			if(this.failure.get() != null)
+			{
+				this.discard(stage);
+				continue;
+			}
+			
+			try
+			{
+				stage.commit().run();
+			}
+			catch(final Throwable t)
+			{
+				// Includes errors (e.g. OutOfMemoryError): The committer must keep draining the queue, otherwise the
+				// submitting thread blocks forever
+				this.failure.compareAndSet(null, t);
+				this.discard(stage);
+			}
+		}
+	}
+	
+	@SuppressWarnings({"checkstyle:IllegalCatch", "PMD.AvoidCatchingThrowable"})
+	protected void discard(final Stage stage)
+	{
+		try
+		{
+			stage.discard().run();
+		}
+		catch(final Throwable t)
+		{
+			this.failure.compareAndSet(null, t);
+		}
+	}
+	
+	protected void joinCommitter()
+	{
+		try
+		{
+			this.committer.join();
+		}
+		catch(final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the committer", e);
+		}
+	}
+	
+	protected void throwIfFailed()
+	{
+		final Throwable throwable = this.failure.get();
+		if(throwable == null)
+		{
+			return;
+		}
+		
+		if(throwable instanceof final RuntimeException re)
+		{
+			throw re;
+		}
+		if(throwable instanceof final Error err)
+		{
+			throw err;
+		}
+		if(throwable instanceof final IOException ioe)
+		{
+			throw new UncheckedIOException(ioe);
+		}
+		throw new IllegalStateException(throwable);
+	}
+	
+	@Override
+	public void close()
+	{
+		if(this.committer.isAlive())
+		{
+			// Stopped before finish was called: Discard everything that is still in the pipeline
+			this.failure.compareAndSet(null, new CancellationException("Pipeline was closed"));
+			this.enqueue(END);
+			this.joinCommitter();
+		}
+		
+		this.workers.shutdown();
+		try
+		{
+			// Wait so that no task is still writing once the processor returns
+			if(!this.workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+			{
+				throw new IllegalStateException("Worker threads did not terminate in time");
+			}
+		}
+		catch(final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	protected record Stage(Runnable commit, Runnable discard)
+	{
+	}
+}
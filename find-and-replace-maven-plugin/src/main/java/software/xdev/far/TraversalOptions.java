@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.List;
+
+
+/**
+ * Options that control which parts of the directory tree are visited.
+ */
+public class TraversalOptions
+{
+	public static final int UNLIMITED_DEPTH = -1;
+	
+	private final List<PathMatcher> includes;
+	private final List<PathMatcher> excludes;
+	private final boolean pruneExcludedDirectories;
+	private final boolean followLinks;
+	private final int maxDepth;
+	private final boolean respectGitIgnore;
+	private final DirectoryCache directoryCache;
+	
+	public TraversalOptions(
+		final List<PathMatcher> includes,
+		final List<PathMatcher> excludes,
+		final boolean pruneExcludedDirectories)
+	{
+		this(includes, excludes, pruneExcludedDirectories, true, UNLIMITED_DEPTH, false, null);
+	}
+	
+	public TraversalOptions(
+		final List<PathMatcher> includes,
+		final List<PathMatcher> excludes,
+		final boolean pruneExcludedDirectories,
+		final boolean followLinks,
+		final int maxDepth,
+		final boolean respectGitIgnore,
+		final DirectoryCache directoryCache)
+	{
+		this.includes = includes;
+		this.excludes = excludes;
+		this.pruneExcludedDirectories = pruneExcludedDirectories;
+		this.followLinks = followLinks;
+		this.maxDepth = maxDepth;
+		this.respectGitIgnore = respectGitIgnore;
+		this.directoryCache = directoryCache;
+	}
+	
+	public static TraversalOptions defaults()
+	{
+		return new TraversalOptions(List.of(), List.of(), false);
+	}
+	
+	/**
+	 * @param relativePath the path relative to the base directory
+	 */
+	public boolean isIncluded(final Path relativePath)
+	{
+		return this.includes.isEmpty() || this.includes.stream().anyMatch(m -> m.matches(relativePath));
+	}
+	
+	/**
+	 * @param relativePath the path relative to the base directory
+	 */
+	public boolean isExcluded(final Path relativePath)
+	{
+		return !this.excludes.isEmpty() && this.excludes.stream().anyMatch(m -> m.matches(relativePath));
+	}
+	
+	public boolean hasPathMatchers()
+	{
+		return !this.includes.isEmpty() || !this.excludes.isEmpty();
+	}
+	
+	public boolean isPruneExcludedDirectories()
+	{
+		return this.pruneExcludedDirectories;
+	}
+	
+	public boolean isFollowLinks()
+	{
+		return this.followLinks;
+	}
+	
+	/**
+	 * @return the maximum depth (the entries of the base directory have a depth of 1) or a negative value if unlimited
+	 */
+	public int getMaxDepth()
+	{
+		return this.maxDepth;
+	}
+	
+	/**
+	 * @param depth the depth of a directory
+	 * @return if the entries of a directory with the given depth are inside the maximum depth
+	 */
+	public boolean canDescend(final int depth)
+	{
+		return this.maxDepth < 0 || depth < this.maxDepth;
+	}
+	
+	public boolean isRespectGitIgnore()
+	{
+		return this.respectGitIgnore;
+	}
+	
+	/**
+	 * @return the cache for directory listings or <code>null</code> if listings are not cached
+	 */
+	public DirectoryCache getDirectoryCache()
+	{
+		return this.directoryCache;
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+
+
+/**
+ * Tracks the identity ({@link BasicFileAttributes#fileKey()}) of the visited directories and files, so that each
+ * physical directory/file is only processed once - even if it can be reached by multiple (symbolic or hard) links.
+ */
+public class VisitedFiles
+{
+	private final Set<Object> directories = new HashSet<>();
+	private final Set<Object> files = new HashSet<>();
+	
+	/**
+	 * @return <code>false</code> if the directory was already visited
+	 */
+	public boolean markDirectory(final BasicFileAttributes attributes)
+	{
+		return mark(this.directories, attributes);
+	}
+	
+	/**
+	 * @return <code>false</code> if the file was already visited
+	 */
+	public boolean markFile(final BasicFileAttributes attributes)
+	{
+		return mark(this.files, attributes);
+	}
+	
+	protected static boolean mark(final Set<Object> visited, final BasicFileAttributes attributes)
+	{
+		final Object fileKey = attributes.fileKey();
+		// Not every file system provides a key - in this case every path is treated as a different file
+		return fileKey == null || visited.add(fileKey);
+	}
+}
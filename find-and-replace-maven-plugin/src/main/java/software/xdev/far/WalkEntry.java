@@ -0,0 +1,31 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+
+/**
+ * An entry found while walking the directory tree.
+ *
+ * @param attributes  the attributes read while listing the parent directory
+ * @param depth       the number of directories between the base directory and the entry plus 1
+ * @param ignoreRules the ignore rules of the directory containing the entry
+ */
+public record WalkEntry(Path path, BasicFileAttributes attributes, int depth, IgnoreRules ignoreRules)
+{
+}
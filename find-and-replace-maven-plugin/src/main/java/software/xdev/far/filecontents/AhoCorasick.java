@@ -0,0 +1,295 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Finds many literals at once in a single linear pass using the Aho-Corasick algorithm.
+ * <p>
+ * Matches are reported with leftmost-longest semantics and don't overlap: At the leftmost position where any key
+ * matches the longest matching key is reported. The search continues after its end.
+ * </p>
+ * <p>
+ * Thread-safe: The automaton is immutable, each search uses its own {@link Searcher}.
+ * </p>
+ */
+public final class AhoCorasick
+{
+	private static final int ROOT = 0;
+	
+	// The transitions of node n are labels/targets[firstTransition[n], firstTransition[n + 1]) sorted by label
+	private final int[] firstTransition;
+	private final char[] labels;
+	private final int[] targets;
+	
+	private final int[] failure;
+	// Index of the key that ends at the node or -1
+	private final int[] keyOfNode;
+	// The next node on the failure path where a key ends or -1
+	private final int[] dictionaryLink;
+	private final int[] depth;
+	private final int[] keyLengths;
+	private final int maxKeyLength;
+	
+	/**
+	 * @param keys not empty and unique
+	 */
+	public AhoCorasick(final List<String> keys)
+	{
+		final List<Map<Character, Integer>> children = new ArrayList<>();
+		final List<Integer> nodeDepths = new ArrayList<>();
+		final List<Integer> nodeKeys = new ArrayList<>();
+		children.add(new TreeMap<>());
+		nodeDepths.add(0);
+		nodeKeys.add(-1);
+		
+		this.keyLengths = new int[keys.size()];
+		for(int k = 0; k < keys.size(); k++)
+		{
+			final String key = keys.get(k);
+			if(key.isEmpty())
+			{
+				throw new IllegalArgumentException("Keys must not be empty");
+			}
+			this.keyLengths[k] = key.length();
+			
+			int node = ROOT;
+			for(int i = 0; i < key.length(); i++)
+			{
+				final Integer child = children.get(node).get(key.charAt(i));
+				if(child != null)
+				{
+					node = child;
+					continue;
+				}
+				children.add(new TreeMap<>());
+				nodeDepths.add(i + 1);
+				nodeKeys.add(-1);
+				children.get(node).put(key.charAt(i), children.size() - 1);
+				node = children.size() - 1;
+			}
+			nodeKeys.set(node, k);
+		}
+		this.maxKeyLength = Arrays.stream(this.keyLengths).max().orElse(0);
+		
+		final int nodes = children.size();
+		this.depth = nodeDepths.stream().mapToInt(Integer::intValue).toArray();
+		this.keyOfNode = nodeKeys.stream().mapToInt(Integer::intValue).toArray();
+		this.firstTransition = new int[nodes + 1];
+		final int transitions = children.stream().mapToInt(Map::size).sum();
+		this.labels = new char[transitions];
+		this.targets = new int[transitions];
+		int t = 0;
+		for(int n = 0; n < nodes; n++)
+		{
+			this.firstTransition[n] = t;
+			for(final Map.Entry<Character, Integer> e : children.get(n).entrySet())
+			{
+				this.labels[t] = e.getKey();
+				this.targets[t] = e.getValue();
+				t++;
+			}
+		}
+		this.firstTransition[nodes] = t;
+		
+		this.failure = new int[nodes];
+		this.dictionaryLink = new int[nodes];
+		this.buildFailureLinks();
+	}
+	
+	/**
+	 * Breadth first, so that the failure links of all shallower nodes are known.
+	 */
+	private void buildFailureLinks()
+	{
+		this.dictionaryLink[ROOT] = -1;
+		final Deque<Integer> queue = new ArrayDeque<>();
+		for(int t = this.firstTransition[ROOT]; t < this.firstTransition[ROOT + 1]; t++)
+		{
+			this.failure[this.targets[t]] = ROOT;
+			this.dictionaryLink[this.targets[t]] = -1;
+			queue.add(this.targets[t]);
+		}
+		
+		while(!queue.isEmpty())
+		{
+			final int node = queue.poll();
+			for(int t = this.firstTransition[node]; t < this.firstTransition[node + 1]; t++)
+			{
+				final int child = this.targets[t];
+				final int fail = this.transition(this.failure[node], this.labels[t]);
+				this.failure[child] = fail;
+				this.dictionaryLink[child] = this.keyOfNode[fail] >= 0 ? fail : this.dictionaryLink[fail];
+				queue.add(child);
+			}
+		}
+	}
+	
+	private int child(final int node, final char c)
+	{
+		final int index =
+			Arrays.binarySearch(this.labels, this.firstTransition[node], this.firstTransition[node + 1], c);
+		return index >= 0 ? this.targets[index] : -1;
+	}
+	
+	private int transition(final int node, final char c)
+	{
+		int current = node;
+		while(true)
+		{
+			final int next = this.child(current, c);
+			if(next >= 0)
+			{
+				return next;
+			}
+			if(current == ROOT)
+			{
+				return ROOT;
+			}
+			current = this.failure[current];
+		}
+	}
+	
+	public int getKeyLength(final int key)
+	{
+		return this.keyLengths[key];
+	}
+	
+	public Searcher newSearcher(final MatchListener listener)
+	{
+		return new Searcher(listener);
+	}
+	
+	@FunctionalInterface
+	public interface MatchListener
+	{
+		/**
+		 * @param start position of the first character of the match
+		 * @param key   index of the matching key
+		 * @return if the search should be continued
+		 */
+		boolean onMatch(long start, int key);
+	}
+	
+	/**
+	 * Consumes the text character by character, so that it can be passed in chunks.
+	 * <p>
+	 * A match is only reported once no longer match can start at the same or an earlier position.
+	 * </p>
+	 */
+	public final class Searcher
+	{
+		private final MatchListener listener;
+		// The longest key (index + 1) matching at a start position - indexed by position modulo the length
+		private final int[] longestAt = new int[AhoCorasick.this.maxKeyLength + 1];
+		private int node = ROOT;
+		// Number of consumed characters
+		private long position;
+		// Matches must not start before this position
+		private long cursor;
+		private boolean stopped;
+		
+		Searcher(final MatchListener listener)
+		{
+			this.listener = listener;
+		}
+		
+		/**
+		 * @return if the search should be continued
+		 */
+		public boolean next(final char c)
+		{
+			this.node = AhoCorasick.this.transition(this.node, c);
+			this.position++;
+			
+			for(int n = AhoCorasick.this.keyOfNode[this.node] >= 0
+				? this.node
+				: AhoCorasick.this.dictionaryLink[this.node];
+				n >= 0;
+				n = AhoCorasick.this.dictionaryLink[n])
+			{
+				this.record(this.position - AhoCorasick.this.depth[n], AhoCorasick.this.keyOfNode[n]);
+			}
+			
+			// No match can start before the text represented by the current node
+			return this.report(this.position - AhoCorasick.this.depth[this.node]);
+		}
+		
+		/**
+		 * Reports the remaining matches at the end of the text.
+		 */
+		public void finish()
+		{
+			this.report(this.position);
+		}
+		
+		private void record(final long start, final int key)
+		{
+			if(start < this.cursor)
+			{
+				// Overlaps a match that was already reported
+				return;
+			}
+			final int slot = this.slot(start);
+			final int current = this.longestAt[slot];
+			if(current == 0 || AhoCorasick.this.keyLengths[current - 1] < AhoCorasick.this.keyLengths[key])
+			{
+				this.longestAt[slot] = key + 1;
+			}
+		}
+		
+		/**
+		 * Reports all matches starting before the limit.
+		 */
+		private boolean report(final long limit)
+		{
+			while(!this.stopped && this.cursor < limit)
+			{
+				final int slot = this.slot(this.cursor);
+				final int key = this.longestAt[slot] - 1;
+				this.longestAt[slot] = 0;
+				if(key < 0)
+				{
+					this.cursor++;
+					continue;
+				}
+				
+				this.stopped = !this.listener.onMatch(this.cursor, key);
+				// Skip the starts inside of the match
+				final long end = this.cursor + AhoCorasick.this.keyLengths[key];
+				for(long p = this.cursor + 1; p < end; p++)
+				{
+					this.longestAt[this.slot(p)] = 0;
+				}
+				this.cursor = end;
+			}
+			return !this.stopped;
+		}
+		
+		private int slot(final long start)
+		{
+			return (int)(start % this.longestAt.length);
+		}
+	}
+}
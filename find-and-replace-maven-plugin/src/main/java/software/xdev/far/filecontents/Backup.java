@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+
+/**
+ * Backup of a file that is replaced by a {@link StagedCommit}, used to restore the file if the commit fails.
+ * <p>
+ * Backups are stored next to the originals ({@link #SUFFIX}). As a backup that remains from a killed build may be
+ * the only copy of the original contents, existing backups are never overwritten.
+ * </p>
+ *
+ * @param backup         <code>null</code> if the file was patched
+ * @param inPlace        if the original is overwritten in place and the backup is a copy
+ * @param restorePatches the original contents of the patched parts or <code>null</code> if the file was replaced
+ */
+public record Backup(Path original, Path backup, boolean inPlace, List<Splice> restorePatches)
+{
+	public static final String SUFFIX = ".far-backup";
+	
+	public static Path pathOf(final Path original)
+	{
+		return original.resolveSibling(original.getFileName() + SUFFIX);
+	}
+	
+	/**
+	 * Fails if a backup of the original - e.g. of a killed build - still exists.
+	 */
+	public static void checkNoLeftover(final Path original) throws FileAlreadyExistsException
+	{
+		final Path backup = pathOf(original);
+		if(Files.exists(backup, LinkOption.NOFOLLOW_LINKS))
+		{
+			throw leftover(backup, null);
+		}
+	}
+	
+	protected static FileAlreadyExistsException leftover(final Path backup, final Throwable cause)
+	{
+		final FileAlreadyExistsException ex = new FileAlreadyExistsException(
+			backup.toString(),
+			null,
+			"Backup of a previous run exists; restore the original from it or delete it");
+		ex.initCause(cause);
+		return ex;
+	}
+	
+	/**
+	 * @param inPlace the original will be overwritten in place instead of being replaced by a new file
+	 */
+	public static Backup create(final Path original, final boolean inPlace) throws IOException
+	{
+		final Path backup = pathOf(original);
+		if(!inPlace)
+		{
+			try
+			{
+				// The original is replaced by a new file, so a link keeps the original contents
+				Files.createLink(backup, original);
+				return new Backup(original, backup, false, null);
+			}
+			catch(final FileAlreadyExistsException e)
+			{
+				throw leftover(backup, e);
+			}
+			catch(final UnsupportedOperationException | IOException e)
+			{
+				// Hard links are not supported - copy instead
+			}
+		}
+		// Fails if the backup exists
+		Files.copy(original, backup, StandardCopyOption.COPY_ATTRIBUTES);
+		return new Backup(original, backup, inPlace, null);
+	}
+	
+	/**
+	 * @param restorePatches the original contents of the parts that will be patched
+	 */
+	public static Backup ofPatches(final Path original, final List<Splice> restorePatches)
+	{
+		return new Backup(original, null, true, restorePatches);
+	}
+	
+	/**
+	 * Restores the original contents and deletes the backup.
+	 */
+	public void restore() throws IOException
+	{
+		if(this.restorePatches != null)
+		{
+			SpliceWriter.patch(this.original, this.restorePatches);
+		}
+		else if(this.inPlace)
+		{
+			try(final OutputStream out = Files.newOutputStream(this.original))
+			{
+				Files.copy(this.backup, out);
+			}
+			Files.delete(this.backup);
+		}
+		else
+		{
+			StagedCommit.move(this.backup, this.original);
+			// Moving a link onto the same file does nothing
+			Files.deleteIfExists(this.backup);
+		}
+	}
+	
+	/**
+	 * Deletes the backup after the commit succeeded.
+	 */
+	public void delete() throws IOException
+	{
+		if(this.backup != null)
+		{
+			Files.deleteIfExists(this.backup);
+		}
+	}
+}
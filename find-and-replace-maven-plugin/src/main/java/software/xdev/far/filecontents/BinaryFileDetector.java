@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Detects binary files (e.g. images, archives or class files) by inspecting their first bytes, so that they can be
+ * skipped before they are decoded as text - rewriting them would corrupt them.
+ * <p>
+ * A file is considered binary if it starts with a known magic number, contains a NUL byte (unless the charset
+ * encodes text with NUL bytes, e.g. UTF-16) or contains a sequence that is invalid for the charset.
+ * </p>
+ * <p>
+ * The result is cached per file until its size or modification time changes. Instances created with
+ * {@link #forSession(Object)} are shared by all executions of the current build.<br/>
+ * Thread-safe.
+ * </p>
+ */
+public class BinaryFileDetector
+{
+	protected static final int SNIFF_SIZE = 8 * 1024;
+	
+	private static final byte[][] MAGIC_NUMBERS = {
+		{(byte)0x89, 'P', 'N', 'G'},
+		{(byte)0xFF, (byte)0xD8, (byte)0xFF}, // JPEG
+		{'G', 'I', 'F', '8'},
+		{'P', 'K', 3, 4}, // ZIP, JAR
+		{(byte)0xCA, (byte)0xFE, (byte)0xBA, (byte)0xBE}, // Java class
+		{0x1F, (byte)0x8B}, // GZIP
+		{'7', 'z', (byte)0xBC, (byte)0xAF},
+		{0x7F, 'E', 'L', 'F'},
+		{'%', 'P', 'D', 'F', '-'},
+	};
+	
+	// Weak so that the detector is released together with the session (e.g. when running inside a daemon)
+	private static final Map<Object, BinaryFileDetector> SESSION_DETECTORS = new WeakHashMap<>();
+	private static final ReentrantLock SESSION_DETECTORS_LOCK = new ReentrantLock();
+	
+	private final Map<Key, Result> results = new ConcurrentHashMap<>();
+	
+	/**
+	 * @param session the current session or <code>null</code> if results should only be cached by this instance
+	 */
+	public static BinaryFileDetector forSession(final Object session)
+	{
+		if(session == null)
+		{
+			return new BinaryFileDetector();
+		}
+		SESSION_DETECTORS_LOCK.lock();
+		try
+		{
+			return SESSION_DETECTORS.computeIfAbsent(session, s -> new BinaryFileDetector());
+		}
+		finally
+		{
+			SESSION_DETECTORS_LOCK.unlock();
+		}
+	}
+	
+	public boolean isBinary(final Path file, final Charset charset) throws IOException
+	{
+		final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		final Key key = new Key(file, charset);
+		final Result cached = this.results.get(key);
+		if(cached != null
+			&& cached.size() == attributes.size()
+			&& cached.modified().equals(attributes.lastModifiedTime()))
+		{
+			return cached.binary();
+		}
+		
+		final boolean binary = sniff(file, charset);
+		this.results.put(key, new Result(attributes.size(), attributes.lastModifiedTime(), binary));
+		return binary;
+	}
+	
+	protected static boolean sniff(final Path file, final Charset charset) throws IOException
+	{
+		final byte[] head;
+		try(final InputStream in = Files.newInputStream(file))
+		{
+			head = in.readNBytes(SNIFF_SIZE);
+		}
+		return startsWithMagicNumber(head)
+			|| containsNul(head) && !encodesTextWithNul(charset)
+			|| !isDecodable(head, charset, head.length < SNIFF_SIZE);
+	}
+	
+	protected static boolean startsWithMagicNumber(final byte[] head)
+	{
+		for(final byte[] magicNumber : MAGIC_NUMBERS)
+		{
+			if(head.length >= magicNumber.length
+				&& ByteBuffer.wrap(head, 0, magicNumber.length).equals(ByteBuffer.wrap(magicNumber)))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	protected static boolean containsNul(final byte[] head)
+	{
+		for(final byte b : head)
+		{
+			if(b == 0)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	protected static boolean encodesTextWithNul(final Charset charset)
+	{
+		return charset.canEncode() && containsNul("a".getBytes(charset));
+	}
+	
+	/**
+	 * @param endOfInput if the whole file was read - otherwise an incomplete sequence at the end is allowed
+	 */
+	protected static boolean isDecodable(final byte[] head, final Charset charset, final boolean endOfInput)
+	{
+		// Every byte is valid
+		if(StandardCharsets.ISO_8859_1.equals(charset))
+		{
+			return true;
+		}
+		final CharsetDecoder decoder = charset.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPORT)
+			.onUnmappableCharacter(CodingErrorAction.REPORT);
+		final CharBuffer out = CharBuffer.allocate((int)Math.ceil(head.length * (double)decoder.maxCharsPerByte()));
+		return !decoder.decode(ByteBuffer.wrap(head), out, endOfInput).isError();
+	}
+	
+	protected record Key(Path file, Charset charset)
+	{
+	}
+	
+	protected record Result(long size, FileTime modified, boolean binary)
+	{
+	}
+}
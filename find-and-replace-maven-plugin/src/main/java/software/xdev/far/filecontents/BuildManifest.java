@@ -0,0 +1,360 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Remembers the state of each processed file after the last run, so that files that are unchanged since then can be
+ * skipped.
+ * <p>
+ * A file is unchanged if its size and modification time are the same - or if only the modification time differs but
+ * the contents still have the same hash, e.g. because the file was regenerated. The manifest is only used if it was
+ * written with the same fingerprint, i.e. with the same rules, masks, encoding etc.
+ * </p>
+ * <p>
+ * The manifest is stored in a compact binary format:
+ * <code>magic, version, fingerprint, entry count, (path, size, modified, hash length, hash)*</code>
+ * </p>
+ * <p>
+ * Entries are recorded concurrently by the workers and the committer. If the manifest is disabled, no file is
+ * skipped and nothing is recorded.
+ * </p>
+ */
+public class BuildManifest
+{
+	protected static final int MAGIC = 0x4641524D;
+	protected static final int VERSION = 1;
+	protected static final String HASH_ALGORITHM = "SHA-256";
+	protected static final int CONTENT_HASH_LENGTH = 16;
+	protected static final int IO_BUFFER_SIZE = 64 * 1024;
+	
+	private final Path file;
+	private final Path baseDir;
+	private final byte[] fingerprint;
+	private final Map<String, Entry> previous;
+	private final Map<String, Entry> current = new ConcurrentHashMap<>();
+	
+	/**
+	 * @param file     the file to save the manifest to or <code>null</code> if the manifest is disabled
+	 * @param baseDir  the directory against which the paths of the files are stored
+	 * @param previous the entries of the last run
+	 */
+	public BuildManifest(
+		final Path file,
+		final Path baseDir,
+		final byte[] fingerprint,
+		final Map<String, Entry> previous)
+	{
+		this.file = file;
+		this.baseDir = baseDir;
+		this.fingerprint = fingerprint;
+		this.previous = previous;
+	}
+	
+	/**
+	 * @return the manifest of the last run of the execution or a disabled one if the execution is not incremental
+	 */
+	public static BuildManifest forExecution(final FileContentsExecData execData)
+	{
+		final Path file = execData.getReadOptions().getManifestFile();
+		return file != null
+			? load(file, execData.getBaseDirPath(), fingerprint(execData))
+			: new BuildManifest(null, execData.getBaseDirPath(), new byte[0], Map.of());
+	}
+	
+	/**
+	 * @return the manifest of the last run or an empty one if there is none with the same fingerprint
+	 */
+	public static BuildManifest load(final Path file, final Path baseDir, final byte[] fingerprint)
+	{
+		try(final DataInputStream in = new DataInputStream(
+			new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE)))
+		{
+			if(in.readInt() != MAGIC || in.readInt() != VERSION
+				|| !Arrays.equals(readBytes(in, fingerprint.length), fingerprint))
+			{
+				return new BuildManifest(file, baseDir, fingerprint, Map.of());
+			}
+			
+			final int count = in.readInt();
+			final Map<String, Entry> entries = new HashMap<>(Math.max(16, (int)(count / 0.75f) + 1));
+			for(int i = 0; i < count; i++)
+			{
+				final String key = in.readUTF();
+				final long size = in.readLong();
+				final long modified = in.readLong();
+				final byte[] hash = readBytes(in, in.readUnsignedByte());
+				entries.put(key, new Entry(size, modified, hash.length > 0 ? hash : null));
+			}
+			return new BuildManifest(file, baseDir, fingerprint, entries);
+		}
+		catch(final IOException e)
+		{
+			// Missing or e.g. truncated - everything is processed again and the manifest is rewritten
+			return new BuildManifest(file, baseDir, fingerprint, Map.of());
+		}
+	}
+	
+	protected static byte[] readBytes(final DataInputStream in, final int length) throws IOException
+	{
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+	
+	/**
+	 * @return if the file has the same size and modification time as after the last run
+	 */
+	public boolean isUnchanged(final Path path)
+	{
+		final String key = this.key(path);
+		final Entry entry = this.previous.get(key);
+		if(entry == null)
+		{
+			return false;
+		}
+		
+		// Not taken from the walk: The attributes of a cached directory listing are outdated if the file was modified
+		// in place
+		final BasicFileAttributes attributes;
+		try
+		{
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		}
+		catch(final IOException e)
+		{
+			// Reported when the file is processed
+			return false;
+		}
+		if(entry.size() != attributes.size() || entry.modified() != toNanos(attributes.lastModifiedTime()))
+		{
+			return false;
+		}
+		this.current.put(key, entry);
+		return true;
+	}
+	
+	/**
+	 * @return if the file has the same size and contents as after the last run - only checked if the hash of the
+	 * contents is known
+	 */
+	public boolean isContentUnchanged(final Path path, final long size) throws IOException
+	{
+		final String key = this.key(path);
+		final Entry entry = this.previous.get(key);
+		if(entry == null || entry.hash() == null || entry.size() != size)
+		{
+			return false;
+		}
+		
+		final FileTime modified = Files.getLastModifiedTime(path);
+		final byte[] hash = hash(path);
+		if(!Arrays.equals(hash, entry.hash()))
+		{
+			return false;
+		}
+		this.current.put(key, new Entry(size, toNanos(modified), hash));
+		return true;
+	}
+	
+	/**
+	 * Records a file whose contents were not changed.
+	 */
+	public void recordUnchanged(final Path path, final long size) throws IOException
+	{
+		if(this.file == null)
+		{
+			return;
+		}
+		final FileTime modified = Files.getLastModifiedTime(path);
+		this.current.put(this.key(path), new Entry(size, toNanos(modified), hash(path)));
+	}
+	
+	/**
+	 * Records a file after its contents were replaced. The hash is not calculated as this would require reading the
+	 * file again.
+	 */
+	public void recordReplaced(final Path path) throws IOException
+	{
+		if(this.file == null)
+		{
+			return;
+		}
+		final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		this.current.put(this.key(path), new Entry(attributes.size(), toNanos(attributes.lastModifiedTime()), null));
+	}
+	
+	protected String key(final Path path)
+	{
+		return this.baseDir.relativize(path).toString();
+	}
+	
+	/**
+	 * Writes all entries recorded during this run. Files that were not encountered are dropped.
+	 */
+	public void save() throws IOException
+	{
+		if(this.file == null)
+		{
+			return;
+		}
+		Files.createDirectories(this.file.toAbsolutePath().getParent());
+		final Path tempFile = Files.createTempFile(this.file.toAbsolutePath().getParent(), "tmp", "tmp");
+		try
+		{
+			try(final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(tempFile), IO_BUFFER_SIZE)))
+			{
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.write(this.fingerprint);
+				out.writeInt(this.current.size());
+				for(final Map.Entry<String, Entry> e : this.current.entrySet())
+				{
+					out.writeUTF(e.getKey());
+					out.writeLong(e.getValue().size());
+					out.writeLong(e.getValue().modified());
+					final byte[] hash = e.getValue().hash() != null ? e.getValue().hash() : new byte[0];
+					out.writeByte(hash.length);
+					out.write(hash);
+				}
+			}
+			StagedCommit.move(tempFile, this.file);
+		}
+		finally
+		{
+			Files.deleteIfExists(tempFile);
+		}
+	}
+	
+	protected static long toNanos(final FileTime time)
+	{
+		return time.to(TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * @return the (truncated) hash of the contents of the file
+	 */
+	public static byte[] hash(final Path path) throws IOException
+	{
+		final MessageDigest digest = newDigest();
+		try(final InputStream in = Files.newInputStream(path))
+		{
+			final byte[] buffer = new byte[IO_BUFFER_SIZE];
+			int read;
+			while((read = in.read(buffer)) != -1)
+			{
+				digest.update(buffer, 0, read);
+			}
+		}
+		return Arrays.copyOf(digest.digest(), CONTENT_HASH_LENGTH);
+	}
+	
+	/**
+	 * @return the hash of everything that affects which files are processed and how they are replaced
+	 */
+	public static byte[] fingerprint(final FileContentsExecData execData)
+	{
+		final MessageDigest digest = newDigest();
+		try(final DataOutputStream out = new DataOutputStream(
+			new DigestOutputStream(new ByteArrayOutputStream(), digest)))
+		{
+			out.writeUTF(execData.getCharset().name());
+			out.writeBoolean(execData.isReplaceLineBased());
+			out.writeUTF(execData.getReadOptions().getStrategy().getValue());
+			out.writeInt(execData.getReadOptions().getMaxMatchSpan());
+			out.writeBoolean(execData.getReadOptions().getBinaryFileDetector() != null);
+			out.writeInt(execData.getFileMasks().size());
+			for(final String mask : execData.getFileMasks())
+			{
+				out.writeUTF(mask);
+			}
+			out.writeInt(execData.getRules().size());
+			for(final CompiledRule rule : execData.getRules())
+			{
+				writeString(out, rule.findRegex().pattern());
+				out.writeInt(rule.findRegex().flags());
+				writeString(out, rule.replaceValue());
+				out.writeBoolean(rule.replaceAll());
+			}
+			final Map<String, String> mapping = execData.getMapping();
+			out.writeInt(mapping != null ? mapping.size() : -1);
+			if(mapping != null)
+			{
+				for(final Map.Entry<String, String> e : mapping.entrySet())
+				{
+					writeString(out, e.getKey());
+					writeString(out, e.getValue());
+				}
+			}
+		}
+		catch(final IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		return digest.digest();
+	}
+	
+	/**
+	 * Like {@link DataOutputStream#writeUTF(String)} but without a limit for the length.
+	 */
+	protected static void writeString(final DataOutputStream out, final String s) throws IOException
+	{
+		out.writeInt(s.length());
+		out.writeChars(s);
+	}
+	
+	protected static MessageDigest newDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+		}
+		catch(final NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(HASH_ALGORITHM + " is always available", e);
+		}
+	}
+	
+	/**
+	 * @param modified the modification time in nanoseconds since the epoch
+	 * @param hash     the (truncated) hash of the contents or <code>null</code> if unknown
+	 */
+	public record Entry(long size, long modified, byte[] hash)
+	{
+	}
+}
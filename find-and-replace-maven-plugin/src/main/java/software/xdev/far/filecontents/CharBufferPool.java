@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+
+/**
+ * Reuses buffers for decoding whole files, so that a new buffer is only allocated if a file is larger than all
+ * previous ones.
+ * <p>
+ * Thread-safe: Each buffer is only handed out once at a time. The pool holds at most as many buffers as were used
+ * concurrently.
+ * </p>
+ * <p>
+ * Buffers above <code>maxPooledCapacity</code> are not kept after they were released, so that a few large files don't
+ * hold on to memory for the whole execution. Note that direct buffers are limited by
+ * <code>-XX:MaxDirectMemorySize</code> (defaults to the maximum heap size).
+ * </p>
+ */
+public class CharBufferPool
+{
+	public static final long DEFAULT_MAX_POOLED_CAPACITY = 8L * 1024 * 1024;
+	
+	private final boolean direct;
+	private final long maxPooledCapacity;
+	private final Queue<CharBuffer> buffers = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * @param direct if the buffers are allocated outside the heap
+	 */
+	public CharBufferPool(final boolean direct)
+	{
+		this(direct, DEFAULT_MAX_POOLED_CAPACITY);
+	}
+	
+	/**
+	 * @param direct            if the buffers are allocated outside the heap
+	 * @param maxPooledCapacity the capacity (in chars) up to which released buffers are kept for reuse
+	 */
+	public CharBufferPool(final boolean direct, final long maxPooledCapacity)
+	{
+		this.direct = direct;
+		this.maxPooledCapacity = maxPooledCapacity;
+	}
+	
+	/**
+	 * @return a cleared buffer with at least the given capacity - has to be released afterwards
+	 */
+	public CharBuffer acquire(final long capacity) throws IOException
+	{
+		// A direct buffer is limited by the maximum size of the underlying byte buffer
+		final long maxCapacity = this.direct ? Integer.MAX_VALUE / Character.BYTES : Integer.MAX_VALUE;
+		if(capacity > maxCapacity)
+		{
+			throw new IOException("File is too large to be decoded at once: " + capacity + " chars");
+		}
+		
+		final CharBuffer pooled = this.buffers.poll();
+		if(pooled != null && pooled.capacity() >= capacity)
+		{
+			return pooled.clear();
+		}
+		// A smaller pooled buffer is dropped
+		return this.direct
+			? ByteBuffer.allocateDirect((int)capacity * Character.BYTES).asCharBuffer()
+			: CharBuffer.allocate((int)capacity);
+	}
+	
+	public void release(final CharBuffer buffer)
+	{
+		if(buffer.capacity() <= this.maxPooledCapacity)
+		{
+			this.buffers.offer(buffer);
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.util.regex.Pattern;
+
+
+/**
+ * A find and replace rule that is applied to the contents of a file.
+ */
+public record CompiledRule(Pattern findRegex, String replaceValue, boolean replaceAll, Replacement replacement)
+{
+	public CompiledRule(final Pattern findRegex, final String replaceValue, final boolean replaceAll)
+	{
+		this(findRegex, replaceValue, replaceAll, Replacement.compile(replaceValue, findRegex));
+	}
+}
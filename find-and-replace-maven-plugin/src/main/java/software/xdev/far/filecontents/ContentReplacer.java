@@ -0,0 +1,277 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Writes the replaced contents of a file into a temporary file next to it.
+ * <p>
+ * All rules are applied in a single pass, so that each file is only read, decoded and written once.
+ * </p>
+ * <p>
+ * Thread-safe: Can be used for multiple files concurrently.
+ * </p>
+ */
+public class ContentReplacer
+{
+	protected final FileContentsExecData execData;
+	
+	// null if the charset is not supported or multiple rules are applied
+	protected final SpliceFinder spliceFinder;
+	
+	// null if the pattern is not a literal - then the (slower) SpliceFinder is used
+	protected final LiteralFinder literalFinder;
+	
+	// Find a literal required by each rule - empty if a rule has none or the literalFinder is used
+	protected final List<LiteralFinder> prefilters;
+	
+	// null if no mapping file is used
+	protected final MappingFinder mappingFinder;
+	
+	// If matching each line separately finds the same matches as matching the whole file
+	protected final boolean lineSafe;
+	
+	protected final CharBufferPool charBufferPool = new CharBufferPool(true);
+	
+	protected final DecodedReplacer decodedReplacer;
+	
+	protected final AtomicInteger skippedBinaryFiles = new AtomicInteger();
+	
+	public ContentReplacer(final FileContentsExecData execData)
+	{
+		this.execData = execData;
+		this.decodedReplacer = new DecodedReplacer(execData);
+		this.mappingFinder = execData.getMapping() != null
+			? new MappingFinder(execData.getMapping(), execData.getCharset(), execData.isReplaceAll())
+			: null;
+		
+		final List<CompiledRule> rules = execData.getRules();
+		// Splices of multiple rules can't be combined as each rule is applied to the result of the previous one
+		final boolean singleRule = rules.size() == 1;
+		this.spliceFinder = singleRule ? SpliceFinder.create(execData, rules.get(0)) : null;
+		this.literalFinder = singleRule ? LiteralFinder.create(execData, rules.get(0)) : null;
+		this.lineSafe = rules.stream().allMatch(LineSafePattern::isLineSafe);
+		this.prefilters = this.literalFinder == null && EncodedLength.forCharset(execData.getCharset()) != null
+			? createPrefilters(execData)
+			: List.of();
+	}
+	
+	protected static List<LiteralFinder> createPrefilters(final FileContentsExecData execData)
+	{
+		final CharsetEncoder encoder = execData.getCharset().newEncoder();
+		final List<LiteralFinder> prefilters = new ArrayList<>();
+		for(final CompiledRule rule : execData.getRules())
+		{
+			final String literal = RequiredLiteral.of(rule.findRegex());
+			// Replacement characters can only be found after decoding
+			if(literal == null || literal.indexOf('\uFFFD') >= 0 || !encoder.canEncode(literal))
+			{
+				return List.of();
+			}
+			prefilters.add(new LiteralFinder(literal.getBytes(execData.getCharset()), new byte[0], false));
+		}
+		return prefilters;
+	}
+	
+	protected boolean isBinary(final Path file) throws IOException
+	{
+		final BinaryFileDetector detector = this.execData.getReadOptions().getBinaryFileDetector();
+		if(detector == null || !detector.isBinary(file, this.execData.getCharset()))
+		{
+			return false;
+		}
+		this.execData.getLogger().debug(
+			"Skipping " + file + " - binary or not valid " + this.execData.getCharset().name());
+		this.skippedBinaryFiles.incrementAndGet();
+		return true;
+	}
+	
+	/**
+	 * @return the number of files that were skipped because they are binary (or not valid in the charset)
+	 */
+	public int getSkippedBinaryFiles()
+	{
+		return this.skippedBinaryFiles.get();
+	}
+	
+	/**
+	 * @return the replaced contents or <code>null</code> if nothing was replaced
+	 */
+	public ReplacedContents replace(final File file) throws IOException
+	{
+		return this.replace(file, file.length());
+	}
+	
+	/**
+	 * @param size the size of the file in bytes, e.g. from the attributes read while walking the directory tree
+	 * @return the replaced contents or <code>null</code> if nothing was replaced
+	 */
+	public ReplacedContents replace(final File file, final long size) throws IOException
+	{
+		if(this.isBinary(file.toPath()))
+		{
+			return null;
+		}
+		if(this.mappingFinder != null)
+		{
+			return this.replaceMapped(file);
+		}
+		if(this.cannotMatch(file.toPath()))
+		{
+			return null;
+		}
+		if(this.spliceFinder != null)
+		{
+			return this.replaceSpliced(file, size);
+		}
+		return this.replaceDecoded(file, size);
+	}
+	
+	protected ReplacedContents replaceDecoded(final File file, final long size) throws IOException
+	{
+		return ReplacedContents.inTempFile(this.isMatchingLines(size)
+			? this.decodedReplacer.replaceLineBased(file)
+			: this.decodedReplacer.replaceWholeFile(file));
+	}
+	
+	/**
+	 * Most files can't match: Reject them by searching the raw bytes before doing any decoding.
+	 * <p>
+	 * If no rule matches the original contents, the later rules are also applied to the original contents - so no rule
+	 * can match if none of the required literals is found.
+	 * </p>
+	 */
+	protected boolean cannotMatch(final Path file) throws IOException
+	{
+		if(this.prefilters.isEmpty())
+		{
+			return false;
+		}
+		for(final LiteralFinder prefilter : this.prefilters)
+		{
+			if(!prefilter.find(file).isEmpty())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	protected ReplacedContents replaceMapped(final File file) throws IOException
+	{
+		if(this.mappingFinder.isMatchingBytes())
+		{
+			return this.writeSplices(file, this.mappingFinder.find(file.toPath()));
+		}
+		
+		return ReplacedContents.inTempFile(this.decodedReplacer.replaceMapped(file, this.mappingFinder));
+	}
+	
+	/**
+	 * Writes only the replacements and copies the unchanged bytes of the original file.
+	 */
+	protected ReplacedContents replaceSpliced(final File file, final long size) throws IOException
+	{
+		final List<Splice> splices;
+		try
+		{
+			splices = this.findSplices(file.toPath(), size);
+		}
+		catch(final CharacterCodingException e)
+		{
+			// The positions of the bytes can't be determined if the file can't be decoded
+			return this.replaceDecoded(file, size);
+		}
+		return this.writeSplices(file, splices);
+	}
+	
+	/**
+	 * @param found the splices found - including those that replace bytes with the same bytes
+	 * @return the patches to write directly into the file if enabled and possible - otherwise the temp file
+	 */
+	protected ReplacedContents writeSplices(final File file, final List<Splice> found) throws IOException
+	{
+		// Rewriting a file without changing it would still update its modification time
+		final List<Splice> splices = SpliceWriter.withoutNoOps(file.toPath(), found);
+		if(splices.isEmpty())
+		{
+			return null;
+		}
+		if(this.execData.isInPlace() && SpliceWriter.isLengthPreserving(splices))
+		{
+			return ReplacedContents.patches(splices);
+		}
+		
+		final Path tempFile = this.createTempFile(file);
+		try
+		{
+			SpliceWriter.write(file.toPath(), tempFile, splices);
+		}
+		catch(final IOException | RuntimeException e)
+		{
+			Files.deleteIfExists(tempFile);
+			throw e;
+		}
+		return ReplacedContents.inTempFile(tempFile);
+	}
+	
+	protected List<Splice> findSplices(final Path file, final long size) throws IOException
+	{
+		if(this.literalFinder != null)
+		{
+			// Works on the encoded bytes: Same result for line based and whole file matching
+			return this.literalFinder.find(file);
+		}
+		if(this.isMatchingLines(size))
+		{
+			return this.spliceFinder.findLineBased(file);
+		}
+		return switch(this.execData.getReadOptions().strategyFor(size))
+		{
+			case MEMORY_MAPPED -> this.spliceFinder.findMapped(file, this.charBufferPool);
+			case CHUNKED -> this.spliceFinder.findChunked(file, this.execData.getReadOptions().getMaxMatchSpan());
+			case AUTO, IN_MEMORY -> this.spliceFinder.find(file);
+		};
+	}
+	
+	/**
+	 * @return if each line is matched separately - either because it's configured or because the file is too large to
+	 * be read at once and this finds the same matches
+	 */
+	protected boolean isMatchingLines(final long size)
+	{
+		return this.execData.isReplaceLineBased()
+			|| this.lineSafe && this.execData.getReadOptions().isLargeForAuto(size);
+	}
+	
+	/**
+	 * Creates the file for the replaced contents next to the original, so that it can be moved onto it atomically.
+	 */
+	protected Path createTempFile(final File original) throws IOException
+	{
+		return Files.createTempFile(original.getParentFile().toPath(), "tmp", "tmp");
+	}
+}
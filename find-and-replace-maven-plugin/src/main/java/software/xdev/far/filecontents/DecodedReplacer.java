@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+/**
+ * Applies the rules to the decoded contents of a file and writes all of it into a temporary file next to it.
+ * <p>
+ * Used when the replaced parts can't be spliced into the original bytes, e.g. for unsupported charsets, multiple
+ * rules or undecodable input.
+ * </p>
+ * <p>
+ * Thread-safe: Can be used for multiple files concurrently.
+ * </p>
+ */
+public class DecodedReplacer
+{
+	protected static final int COPY_BUFFER_SIZE = 8 * 1024;
+	
+	protected final FileContentsExecData execData;
+	
+	public DecodedReplacer(final FileContentsExecData execData)
+	{
+		this.execData = execData;
+	}
+	
+	/**
+	 * Reads the file line by line until the first match. Only then the temp file is created and written, so that files
+	 * without a match are only read.
+	 */
+	protected Path replaceLineBased(final File file) throws IOException
+	{
+		final RuleChain rules = new RuleChain(this.execData.getRules());
+		try(final LineReader lines = new LineReader(this.newReader(file)))
+		{
+			long charsBeforeMatch = 0;
+			while(lines.next())
+			{
+				final StringBuilder replaced = rules.apply(lines.text(), lines.lineStart(), lines.lineEnd());
+				// A match that is replaced with the same text doesn't require rewriting the file
+				if(replaced != null && !lines.isLine(replaced))
+				{
+					return this.writeLineBased(file, charsBeforeMatch, replaced, rules, lines);
+				}
+				charsBeforeMatch += lines.terminatorEnd() - lines.lineStart();
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Writes the lines exactly as they were read - including their terminators - except for the replaced parts.
+	 *
+	 * @param charsBeforeMatch the number of chars before the first matching line
+	 * @param replacedLine     the first matching line after applying the rules
+	 * @param lines            positioned at the first matching line
+	 */
+	protected Path writeLineBased(
+		final File file,
+		final long charsBeforeMatch,
+		final StringBuilder replacedLine,
+		final RuleChain rules,
+		final LineReader lines) throws IOException
+	{
+		final Path tempFile = this.createTempFile(file);
+		try
+		{
+			try(final Reader prefixReader = this.newReader(file);
+				final FileOutputStream fos = new FileOutputStream(tempFile.toFile());
+				final OutputStreamWriter osr = new OutputStreamWriter(fos, this.execData.getCharset());
+				final BufferedWriter fileWriter = new BufferedWriter(osr))
+			{
+				final char[] scratch = new char[COPY_BUFFER_SIZE];
+				// Copy the lines that were already read
+				copy(prefixReader, fileWriter, charsBeforeMatch, scratch);
+				
+				lines.writeLine(replacedLine, fileWriter, scratch);
+				while(lines.next())
+				{
+					lines.writeLine(rules.apply(lines.text(), lines.lineStart(), lines.lineEnd()), fileWriter, scratch);
+				}
+			}
+		}
+		catch(final IOException | RuntimeException e)
+		{
+			Files.deleteIfExists(tempFile);
+			throw e;
+		}
+		return tempFile;
+	}
+	
+	protected static void copy(
+		final Reader reader,
+		final Writer writer,
+		final long length,
+		final char[] scratch) throws IOException
+	{
+		long remaining = length;
+		while(remaining > 0)
+		{
+			final int read = reader.read(scratch, 0, (int)Math.min(scratch.length, remaining));
+			if(read < 0)
+			{
+				throw new EOFException("File changed while it was read");
+			}
+			writer.write(scratch, 0, read);
+			remaining -= read;
+		}
+	}
+	
+	protected Reader newReader(final File file) throws IOException
+	{
+		return new InputStreamReader(new FileInputStream(file), this.execData.getCharset());
+	}
+	
+	protected Path replaceWholeFile(final File file) throws IOException
+	{
+		final String contents = Files.readString(file.toPath(), this.execData.getCharset());
+		final RuleChain rules = new RuleChain(this.execData.getRules());
+		final String replaced = rules.apply(contents);
+		if(!rules.hasMatched() || replaced.equals(contents))
+		{
+			return null;
+		}
+		
+		final Path tempFile = this.createTempFile(file);
+		Files.writeString(tempFile, replaced, this.execData.getCharset());
+		return tempFile;
+	}
+	
+	protected Path replaceMapped(final File file, final MappingFinder mappingFinder) throws IOException
+	{
+		final String contents = Files.readString(file.toPath(), this.execData.getCharset());
+		final String replaced = mappingFinder.replace(contents);
+		if(replaced == null || replaced.equals(contents))
+		{
+			return null;
+		}
+		
+		final Path tempFile = this.createTempFile(file);
+		Files.writeString(tempFile, replaced, this.execData.getCharset());
+		return tempFile;
+	}
+	
+	protected Path createTempFile(final File original) throws IOException
+	{
+		return Files.createTempFile(original.getParentFile().toPath(), "tmp", "tmp");
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * Calculates the number of bytes that characters occupy when encoded - without encoding them.
+ * <p>
+ * Only available for charsets where this is possible without state and that are ASCII compatible regarding line
+ * terminators.
+ * </p>
+ */
+public enum EncodedLength
+{
+	SINGLE_BYTE
+		{
+			@Override
+			public long of(final CharSequence s, final int from, final int to)
+			{
+				return (long)to - from;
+			}
+		},
+	UTF_8
+		{
+			@SuppressWarnings("checkstyle:MagicNumber")
+			@Override
+			public long of(final CharSequence s, final int from, final int to)
+			{
+				long length = 0;
+				for(int i = from; i < to; i++)
+				{
+					final char c = s.charAt(i);
+					if(c < 0x80)
+					{
+						length++;
+					}
+					else if(c < 0x800 || Character.isSurrogate(c))
+					{
+						// A surrogate pair is encoded with 4 bytes
+						length += 2;
+					}
+					else
+					{
+						length += 3;
+					}
+				}
+				return length;
+			}
+		};
+	
+	private static final byte[] ASCII_LINE_TERMINATORS = {'\r', '\n'};
+	
+	/**
+	 * @return the number of bytes of the characters in the range
+	 */
+	public abstract long of(CharSequence s, int from, int to);
+	
+	/**
+	 * @return the calculation for the charset or <code>null</code> if not supported
+	 */
+	public static EncodedLength forCharset(final Charset charset)
+	{
+		if(StandardCharsets.UTF_8.equals(charset))
+		{
+			return UTF_8;
+		}
+		if(charset.canEncode()
+			&& charset.newEncoder().maxBytesPerChar() == 1.0f
+			&& charset.newDecoder().maxCharsPerByte() == 1.0f
+			&& Arrays.equals(ASCII_LINE_TERMINATORS, "\r\n".getBytes(charset)))
+		{
+			return SINGLE_BYTE;
+		}
+		return null;
+	}
+}
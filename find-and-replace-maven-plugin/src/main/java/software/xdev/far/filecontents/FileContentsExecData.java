@@ -16,6 +16,8 @@
 package software.xdev.far.filecontents;
 
 import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
 
 import software.xdev.far.ExecData;
 
@@ -26,11 +28,42 @@ public class FileContentsExecData extends ExecData
 	
 	private final boolean replaceLineBased;
 	
-	public FileContentsExecData(final ExecData other, final Charset charset, final boolean replaceLineBased)
+	private final boolean virtualThreads;
+	
+	private final int maxOpenFiles;
+	
+	private final ReadOptions readOptions;
+	
+	private final List<CompiledRule> rules;
+	
+	private final Map<String, String> mapping;
+	
+	private final boolean transactional;
+	
+	private final boolean inPlace;
+	
+	public FileContentsExecData(
+		final ExecData other,
+		final Charset charset,
+		final boolean replaceLineBased,
+		final boolean virtualThreads,
+		final int maxOpenFiles,
+		final ReadOptions readOptions,
+		final List<CompiledRule> rules,
+		final Map<String, String> mapping,
+		final boolean transactional,
+		final boolean inPlace)
 	{
 		super(other);
 		this.charset = charset;
 		this.replaceLineBased = replaceLineBased;
+		this.virtualThreads = virtualThreads;
+		this.maxOpenFiles = maxOpenFiles;
+		this.readOptions = readOptions;
+		this.rules = rules;
+		this.mapping = mapping;
+		this.transactional = transactional;
+		this.inPlace = inPlace;
 	}
 	
 	public Charset getCharset()
@@ -42,4 +75,51 @@ public class FileContentsExecData extends ExecData
 	{
 		return this.replaceLineBased;
 	}
+	
+	public boolean isVirtualThreads()
+	{
+		return this.virtualThreads;
+	}
+	
+	public int getMaxOpenFiles()
+	{
+		return this.maxOpenFiles;
+	}
+	
+	public ReadOptions getReadOptions()
+	{
+		return this.readOptions;
+	}
+	
+	/**
+	 * @return the rules to apply in order - <code>findRegex</code> is the first one if set
+	 */
+	public List<CompiledRule> getRules()
+	{
+		return this.rules;
+	}
+	
+	/**
+	 * @return the literals to find mapped to their replacement or <code>null</code> if no mapping file is used
+	 */
+	public Map<String, String> getMapping()
+	{
+		return this.mapping;
+	}
+	
+	/**
+	 * @return if all files are replaced together after they were staged
+	 */
+	public boolean isTransactional()
+	{
+		return this.transactional;
+	}
+	
+	/**
+	 * @return if replacements that don't change the length of a file are written directly into it
+	 */
+	public boolean isInPlace()
+	{
+		return this.inPlace;
+	}
 }
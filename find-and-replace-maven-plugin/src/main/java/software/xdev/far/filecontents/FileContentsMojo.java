@@ -15,7 +15,13 @@
  */
 package software.xdev.far.filecontents;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.regex.Pattern;
 
@@ -33,6 +39,9 @@ import software.xdev.far.ExecData;
 @Mojo(name = "file-contents", defaultPhase = LifecyclePhase.NONE, threadSafe = true)
 public class FileContentsMojo extends BaseMojo<FileContentsExecData>
 {
+	private static final int DEFAULT_MAX_OPEN_FILES = 256;
+	private static final int DEFAULT_MAX_MATCH_SPAN = 64 * 1024;
+	private static final int MAX_MATCH_SPAN_LIMIT = Integer.MAX_VALUE / 4;
 	
 	/**
 	 * Specify file encoding during file-contents replacement
@@ -52,6 +61,191 @@ public class FileContentsMojo extends BaseMojo<FileContentsExecData>
 	@Parameter(property = "replaceLineBased", defaultValue = "true")
 	protected boolean replaceLineBased = true;
 	
+	/**
+	 * Process each file on its own virtual thread instead of using a pool of <code>parallelism</code> threads.
+	 * <p>
+	 * This is beneficial when most of the time is spent waiting for (e.g. network) I/O.<br/>
+	 * Requires Java 21 or newer. On older versions the files are processed sequentially.
+	 * </p>
+	 */
+	@Parameter(property = "virtualThreads", defaultValue = "false")
+	protected boolean virtualThreads;
+	
+	/**
+	 * The maximum number of files that are processed at the same time when using <code>virtualThreads</code>.
+	 */
+	@Parameter(property = "maxOpenFiles", defaultValue = "256")
+	protected int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+	
+	/**
+	 * How a file is read when <code>replaceLineBased</code> is <code>false</code>.
+	 * <p>
+	 * Possible values:
+	 * </p>
+	 * <ul>
+	 *     <li><code>in-memory</code> (default) - The whole file is read into memory</li>
+	 *     <li><code>memory-mapped</code> - The file is memory-mapped and decoded into a reused buffer outside the heap,
+	 *     so that the required heap doesn't depend on the size of the file. The buffer still needs direct memory of
+	 *     twice the size of the file (limited by <code>-XX:MaxDirectMemorySize</code>, which defaults to the maximum
+	 *     heap size) - use <code>chunked</code> for files that don't fit.<br/>
+	 *     Only available for UTF-8 and ASCII compatible single byte encodings, otherwise <code>in-memory</code> is
+	 *     used.</li>
+	 *     <li><code>chunked</code> - The file is decoded and matched in chunks using a sliding window, so that the
+	 *     required memory is bounded by <code>maxMatchSpan</code> instead of the size of the file. Matches can still
+	 *     span multiple lines, which makes this also suitable for files with very long lines (e.g. minified JS).<br/>
+	 *     Only available for UTF-8 and ASCII compatible single byte encodings, otherwise <code>in-memory</code> is
+	 *     used.</li>
+	 *     <li><code>auto</code> - Selected for each file based on its size: Files up to 8 MiB are read
+	 *     <code>in-memory</code>. Larger files are matched line by line if the pattern can't match across lines (e.g.
+	 *     no <code>\s</code>, negated character classes or lookarounds), otherwise they are
+	 *     <code>memory-mapped</code> or - above 256 MiB - <code>chunked</code>.</li>
+	 * </ul>
+	 * <p>
+	 * <code>memory-mapped</code> and <code>chunked</code> only support a single rule. With multiple
+	 * <code>rules</code> files are read <code>in-memory</code> instead (a warning is logged) - except for
+	 * <code>auto</code> if all rules can be matched line by line.
+	 * </p>
+	 */
+	@Parameter(property = "strategy", defaultValue = "in-memory")
+	protected String strategy = ReplaceStrategy.IN_MEMORY.getValue();
+	
+	/**
+	 * The maximum length of a match in characters when using the <code>chunked</code> strategy.
+	 * <p>
+	 * Matches up to this length are found exactly like when matching the whole file at once, longer matches may be
+	 * cut off or missed. Lookbehinds can see up to this many characters before a match.<br/>
+	 * The memory required for each file is about <code>64K + 2 * maxMatchSpan</code> characters.
+	 * </p>
+	 */
+	@Parameter(property = "maxMatchSpan", defaultValue = "65536")
+	protected int maxMatchSpan = DEFAULT_MAX_MATCH_SPAN;
+	
+	/**
+	 * Multiple find and replace rules that are applied in order to the contents of each file.
+	 * <p>
+	 * Each rule is applied to the result of the previous one. If <code>findRegex</code> is also set, it is applied
+	 * first. All rules are applied in a single pass: Each file is only read, decoded and written once.
+	 * </p>
+	 * <p>
+	 * When <code>replaceLineBased</code> is <code>false</code>, multiple rules are matched against the whole file read
+	 * into memory (or line by line by the <code>auto</code> strategy): <code>memory-mapped</code> and
+	 * <code>chunked</code> are not supported for them.
+	 * </p>
+	 * <pre>
+	 * &lt;rules&gt;
+	 *     &lt;rule&gt;
+	 *         &lt;findRegex&gt;foo&lt;/findRegex&gt;
+	 *         &lt;replaceValue&gt;bar&lt;/replaceValue&gt;
+	 *         &lt;!-- Optional, defaults to replaceAll --&gt;
+	 *         &lt;replaceAll&gt;false&lt;/replaceAll&gt;
+	 *     &lt;/rule&gt;
+	 * &lt;/rules&gt;
+	 * </pre>
+	 */
+	@Parameter
+	protected List<Rule> rules;
+	
+	/**
+	 * A file containing literal find and replace pairs, e.g. to rename hundreds of identifiers at once. This is
+	 * relative to the location of the pom.
+	 * <p>
+	 * Supported formats (UTF-8 encoded):
+	 * </p>
+	 * <ul>
+	 *     <li><code>.csv</code> - One <code>find,replace</code> pair per line, split at the first comma</li>
+	 *     <li>Any other file is read as <code>.properties</code> file - the key is the literal to find</li>
+	 * </ul>
+	 * <p>
+	 * All pairs are applied in a single linear pass over each file: At the leftmost position where any literal
+	 * matches, the longest matching literal is replaced. The search continues after the replaced literal.<br/>
+	 * Can't be combined with <code>findRegex</code> or <code>rules</code>.
+	 * </p>
+	 */
+	@Parameter(property = "mappingFile")
+	protected String mappingFile;
+	
+	/**
+	 * Skip files that look like binary files (e.g. images, archives or class files) instead of decoding them as text.
+	 * <p>
+	 * A file is considered binary if it starts with a known magic number or its first bytes contain a NUL byte or a
+	 * sequence that is invalid for the <code>encoding</code>. The result is cached for the current build.
+	 * </p>
+	 */
+	@Parameter(property = "skipBinaryFiles", defaultValue = "true")
+	protected boolean skipBinaryFiles = true;
+	
+	/**
+	 * Files smaller than this (in bytes) are skipped.
+	 */
+	@Parameter(property = "minFileSize", defaultValue = "0")
+	protected long minFileSize;
+	
+	/**
+	 * Files larger than this (in bytes) are skipped without opening them, e.g. to skip large generated artifacts.
+	 * <p>
+	 * Default: Unlimited
+	 * </p>
+	 */
+	@Parameter(property = "maxFileSize")
+	protected Long maxFileSize;
+	
+	/**
+	 * Stage all changed files first and replace the original files together at the end.
+	 * <p>
+	 * If anything fails before, no file is changed. If replacing a file fails, all files replaced so far are restored.
+	 * The staged files are synced to disk before they are swapped in.<br/>
+	 * Otherwise each file is replaced as soon as its new contents are staged.
+	 * </p>
+	 * <p>
+	 * In both cases each file is replaced by an atomic move (if the file system supports it), so it's never missing or
+	 * half written. Exceptions are files that are hard linked - they are overwritten in place so that they stay linked
+	 * - and files patched with <code>inPlace</code>. These may be half written if the build is killed while writing.
+	 * </p>
+	 * <p>
+	 * Before a file is replaced in a transaction, a backup <code>&lt;file&gt;.far-backup</code> is created next to it.
+	 * Backups are deleted after the transaction is committed or rolled back. If the build is killed while committing,
+	 * they remain: They contain the original contents and can either be renamed back to restore the files or be
+	 * deleted, e.g. with <code>find . -name '*.far-backup' -delete</code>. Until then the next transaction that changes
+	 * such a file fails before any file is changed, so the backup isn't overwritten.
+	 * </p>
+	 */
+	@Parameter(property = "transactional", defaultValue = "false")
+	protected boolean transactional;
+	
+	/**
+	 * Write replacements directly into the original file if they don't change its length, e.g. when bumping a version
+	 * from <code>1.2.3</code> to <code>1.2.4</code>.
+	 * <p>
+	 * Only the replaced bytes are written instead of copying the whole file. Note that - unlike replacing the file -
+	 * this is not atomic: A file may be partially patched if the build is killed while writing.<br/>
+	 * Only available for UTF-8 and ASCII compatible single byte encodings and a single rule (or a mapping file).
+	 * </p>
+	 */
+	@Parameter(property = "inPlace", defaultValue = "false")
+	protected boolean inPlace;
+	
+	/**
+	 * Skip files that are unchanged since the last run of this execution.
+	 * <p>
+	 * The size, modification time and a hash of the contents of each processed file are stored in a manifest inside
+	 * the <code>manifestDirectory</code>. A file is skipped if its size and modification time - or its contents - are
+	 * the same as after the last run. Changing the configuration (e.g. the rules, <code>fileMask</code> or
+	 * <code>encoding</code>) invalidates the manifest.<br/>
+	 * Note that files are no longer processed repeatedly, e.g. when a replacement can be applied more than once.
+	 * </p>
+	 */
+	@Parameter(property = "incremental", defaultValue = "false")
+	protected boolean incremental;
+	
+	/**
+	 * The directory in which the manifests of <code>incremental</code> executions are stored.
+	 */
+	@Parameter(property = "manifestDirectory", defaultValue = "${project.build.directory}/find-and-replace")
+	protected String manifestDirectory;
+	
+	@Parameter(defaultValue = "${mojoExecution.executionId}", readonly = true)
+	protected String executionId;
+	
 	public FileContentsMojo()
 	{
 		super(FileContentsProcessor::new);
@@ -60,6 +254,14 @@ public class FileContentsMojo extends BaseMojo<FileContentsExecData>
 	@Override
 	protected FileContentsExecData enrichData(final ExecData data)
 	{
+		final ReplaceStrategy readStrategy = ReplaceStrategy.fromValue(this.strategy);
+		final List<CompiledRule> compiledRules = this.compileRules(data);
+		if(!this.replaceLineBased && readStrategy.fallsBackToInMemory(compiledRules))
+		{
+			this.getLog().warn("The strategy " + readStrategy.getValue()
+				+ " is not supported for multiple rules - files are read into memory instead");
+		}
+		
 		return new FileContentsExecData(
 			data,
 			Optional.ofNullable(this.encoding)
@@ -74,16 +276,101 @@ public class FileContentsMojo extends BaseMojo<FileContentsExecData>
 					}
 				})
 				.orElseGet(Charset::defaultCharset),
-			this.replaceLineBased
+			this.replaceLineBased,
+			this.virtualThreads,
+			Math.max(1, this.maxOpenFiles),
+			new ReadOptions(
+				readStrategy,
+				Math.min(Math.max(1, this.maxMatchSpan), MAX_MATCH_SPAN_LIMIT),
+				this.minFileSize,
+				Optional.ofNullable(this.maxFileSize).orElse(ReadOptions.UNLIMITED_SIZE),
+				this.skipBinaryFiles ? BinaryFileDetector.forSession(this.session) : null,
+				this.incremental ? this.resolveManifestFile() : null),
+			compiledRules,
+			this.readMappingFile(),
+			this.transactional,
+			this.inPlace
 		);
 	}
 	
+	protected Path resolveManifestFile()
+	{
+		return this.resolvePath(this.manifestDirectory)
+			.resolve("file-contents-" + Optional.ofNullable(this.executionId).orElse("default") + ".manifest");
+	}
+	
+	protected Map<String, String> readMappingFile()
+	{
+		if(this.mappingFile == null)
+		{
+			return null;
+		}
+		if(this.findRegex != null || this.rules != null && !this.rules.isEmpty())
+		{
+			throw new IllegalArgumentException("mappingFile can't be combined with findRegex or rules");
+		}
+		
+		final Map<String, String> mapping;
+		try
+		{
+			mapping = MappingFile.read(this.resolvePath(this.mappingFile));
+		}
+		catch(final IOException e)
+		{
+			throw new UncheckedIOException("Failed to read mappingFile " + this.mappingFile, e);
+		}
+		// Lines never contain line breaks
+		if(this.replaceLineBased && mapping.keySet().stream()
+			.anyMatch(k -> k.indexOf('\n') >= 0 || k.indexOf('\r') >= 0))
+		{
+			throw new IllegalArgumentException(
+				"The literals of the mappingFile can only contain line breaks when replaceLineBased is false");
+		}
+		return mapping;
+	}
+	
+	protected List<CompiledRule> compileRules(final ExecData data)
+	{
+		final List<CompiledRule> compiled = new ArrayList<>();
+		if(data.getFindRegex() != null)
+		{
+			compiled.add(new CompiledRule(data.getFindRegex(), data.getReplaceValue(), data.isReplaceAll()));
+		}
+		if(this.rules != null)
+		{
+			for(final Rule rule : this.rules)
+			{
+				if(rule.getFindRegex() == null)
+				{
+					throw new IllegalArgumentException("findRegex of a rule is required");
+				}
+				compiled.add(new CompiledRule(
+					this.compile(rule.getFindRegex()),
+					Optional.ofNullable(rule.getReplaceValue()).orElse(""),
+					Optional.ofNullable(rule.getReplaceAll()).orElse(data.isReplaceAll())));
+			}
+		}
+		return compiled;
+	}
+	
 	@Override
 	protected Pattern compileFindRegex()
+	{
+		if(this.findRegex == null)
+		{
+			// Not required when only rules or a mapping file are used
+			return this.rules != null && !this.rules.isEmpty() || this.mappingFile != null
+				? null
+				: super.compileFindRegex();
+		}
+		return this.compile(this.findRegex);
+	}
+	
+	protected Pattern compile(final String regex)
 	{
 		return !this.replaceLineBased
-			? Pattern.compile(this.findRegex, Pattern.MULTILINE)
-			: super.compileFindRegex();
+			? Pattern.compile(regex, Pattern.MULTILINE)
+			: Pattern.compile(regex);
 	}
 	
 	public void setEncoding(final String encoding)
@@ -95,4 +382,69 @@ public class FileContentsMojo extends BaseMojo<FileContentsExecData>
 	{
 		this.replaceLineBased = replaceLineBased;
 	}
+	
+	public void setVirtualThreads(final boolean virtualThreads)
+	{
+		this.virtualThreads = virtualThreads;
+	}
+	
+	public void setMaxOpenFiles(final int maxOpenFiles)
+	{
+		this.maxOpenFiles = maxOpenFiles;
+	}
+	
+	public void setStrategy(final String strategy)
+	{
+		this.strategy = strategy;
+	}
+	
+	public void setMaxMatchSpan(final int maxMatchSpan)
+	{
+		this.maxMatchSpan = maxMatchSpan;
+	}
+	
+	public void setRules(final List<Rule> rules)
+	{
+		this.rules = rules;
+	}
+	
+	public void setMappingFile(final String mappingFile)
+	{
+		this.mappingFile = mappingFile;
+	}
+	
+	public void setSkipBinaryFiles(final boolean skipBinaryFiles)
+	{
+		this.skipBinaryFiles = skipBinaryFiles;
+	}
+	
+	public void setTransactional(final boolean transactional)
+	{
+		this.transactional = transactional;
+	}
+	
+	public void setInPlace(final boolean inPlace)
+	{
+		this.inPlace = inPlace;
+	}
+	
+	public void setMinFileSize(final long minFileSize)
+	{
+		this.minFileSize = minFileSize;
+	}
+	
+	public void setMaxFileSize(final Long maxFileSize)
+	{
+		this.maxFileSize = maxFileSize;
+	}
+	
+	public void setIncremental(final boolean incremental)
+	{
+		this.incremental = incremental;
+	}
+	
+	public void setManifestDirectory(final String manifestDirectory)
+	{
+		this.manifestDirectory = manifestDirectory;
+	}
 }
@@ -15,50 +15,213 @@
  */
 package software.xdev.far.filecontents;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.regex.Matcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 
 import software.xdev.far.BaseProcessor;
+import software.xdev.far.OrderedPipeline;
 
 
 public class FileContentsProcessor extends BaseProcessor<FileContentsExecData>
 {
+	private OrderedPipeline pipeline;
+	
+	private Semaphore openFiles;
+	
+	private ContentReplacer replacer;
+	
+	// null if each file is replaced as soon as it's staged
+	private StagedCommit transaction;
+	
+	private BuildManifest manifest;
+	
 	public FileContentsProcessor(final FileContentsExecData execData)
 	{
 		super(execData);
 	}
 	
-	@SuppressWarnings("java:S6300") // Writing to same directory and only temporary
 	@Override
-	protected void handleFileContents(final File file)
+	protected void run()
+	{
+		this.replacer = new ContentReplacer(this.execData);
+		this.transaction = this.execData.isTransactional() ? new StagedCommit() : null;
+		this.manifest = BuildManifest.forExecution(this.execData);
+		try
+		{
+			this.processFiles();
+			this.logSkippedBinaryFiles();
+			if(this.transaction != null)
+			{
+				this.commitTransaction();
+			}
+			this.saveManifest();
+		}
+		finally
+		{
+			this.discardTransaction();
+			this.manifest = null;
+		}
+	}
+	
+	protected void logSkippedBinaryFiles()
+	{
+		final int skipped = this.replacer.getSkippedBinaryFiles();
+		if(skipped > 0)
+		{
+			// Files that are not valid in the encoding are also skipped, which is easy to miss
+			this.execData.getLogger().info("Skipped " + skipped + " binary file(s) or file(s) that are not valid "
+				+ this.execData.getCharset().name() + " - set skipBinaryFiles=false to process them; "
+				+ "run with -X to list them");
+		}
+	}
+	
+	protected void saveManifest()
 	{
 		try
 		{
-			final Path tempFile = this.execData.isReplaceLineBased()
-				? this.replaceLineBased(file)
-				: this.replace(file);
+			this.manifest.save();
+		}
+		catch(final IOException e)
+		{
+			// Only means that all files are processed again on the next run
+			this.execData.getLogger().warn("Failed to write the build manifest", e);
+		}
+	}
+	
+	protected void processFiles()
+	{
+		final OrderedPipeline p = this.createPipeline();
+		if(p == null)
+		{
+			super.run();
+			return;
+		}
+		
+		try(p)
+		{
+			this.pipeline = p;
+			super.run();
+			p.finish();
+		}
+		finally
+		{
+			this.pipeline = null;
+			this.openFiles = null;
+		}
+	}
+	
+	/**
+	 * @return the pipeline to use or <code>null</code> if the files should be processed sequentially
+	 */
+	protected OrderedPipeline createPipeline()
+	{
+		if(this.execData.isVirtualThreads())
+		{
+			final Optional<ExecutorService> virtualThreadExecutor = OrderedPipeline.newVirtualThreadPerTaskExecutor();
+			if(virtualThreadExecutor.isEmpty())
+			{
+				this.execData.getLogger().warn(
+					"Virtual threads require Java 21 or newer - processing files sequentially");
+				return null;
+			}
 			
-			if(tempFile != null)
+			this.openFiles = new Semaphore(this.execData.getMaxOpenFiles());
+			return new OrderedPipeline(virtualThreadExecutor.get(), this.execData.getMaxOpenFiles() * 2);
+		}
+		
+		return this.execData.getParallelism() > 1
+			? new OrderedPipeline(this.execData.getParallelism())
+			: null;
+	}
+	
+	@Override
+	protected void handleFileContents(final File file, final BasicFileAttributes attributes)
+	{
+		final long size = attributes.size();
+		if(!this.execData.getReadOptions().isSizeInRange(size))
+		{
+			// Skipped without opening the file
+			this.execData.getLogger().debug("Skipping " + file + " - size " + size + " is out of range");
+			return;
+		}
+		if(this.manifest.isUnchanged(file.toPath()))
+		{
+			this.execData.getLogger().debug("Skipping " + file + " - unchanged since the last run");
+			return;
+		}
+		
+		if(this.pipeline != null)
+		{
+			this.pipeline.submit(() -> this.stageWithOpenFilesLimit(file, size), this::commit, this::discard);
+			return;
+		}
+		
+		this.commit(this.stage(file, size));
+	}
+	
+	protected StagedContents stageWithOpenFilesLimit(final File file, final long size)
+	{
+		if(this.openFiles == null)
+		{
+			return this.stage(file, size);
+		}
+		
+		try
+		{
+			this.openFiles.acquire();
+		}
+		catch(final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting to open " + file, e);
+		}
+		try
+		{
+			return this.stage(file, size);
+		}
+		finally
+		{
+			this.openFiles.release();
+		}
+	}
+	
+	/**
+	 * Matches the contents of the file and writes the replaced contents into a temporary file - or determines the
+	 * patches to write into the original file.
+	 * <p>
+	 * May be called concurrently for different files.
+	 * </p>
+	 *
+	 * @param size the size of the file in bytes
+	 */
+	protected StagedContents stage(final File file, final long size)
+	{
+		try
+		{
+			if(this.manifest.isContentUnchanged(file.toPath(), size))
+			{
+				this.execData.getLogger().debug("Skipping " + file + " - contents unchanged since the last run");
+				return new StagedContents(file, null);
+			}
+			
+			final ReplacedContents contents = this.replacer.replace(file, size);
+			if(contents == null)
+			{
+				this.manifest.recordUnchanged(file.toPath(), size);
+			}
+			if(contents != null && !contents.isPatch() && this.transaction != null)
 			{
-				Files.delete(file.toPath());
-				
-				if(!tempFile.toFile().renameTo(file))
-				{
-					throw new IOException(
-						"Failed to rename temp file at: " + tempFile + " to " + file.getPath());
-				}
-				this.execData.getLogger().info("Replaced contents inside " + file);
+				// Synced by each worker, so that only the directories have to be synced when committing
+				StagedCommit.sync(contents.tempFile());
 			}
+			return new StagedContents(file, contents);
 		}
 		catch(final IOException e)
 		{
@@ -66,60 +229,110 @@ public class FileContentsProcessor extends BaseProcessor<FileContentsExecData>
 		}
 	}
 	
-	private Path replaceLineBased(final File file) throws IOException
+	/**
+	 * Replaces the original file with the staged one - or adds it to the transaction if the files are replaced at the
+	 * end.
+	 * <p>
+	 * Always called from a single thread in the order in which the files were found.
+	 * </p>
+	 */
+	protected void commit(final StagedContents staged)
 	{
-		final Path tempFile;
-		tempFile = this.createTempFile(file);
-		try(final FileInputStream fis = new FileInputStream(file);
-			final InputStreamReader isr = new InputStreamReader(fis, this.execData.getCharset());
-			final BufferedReader fileReader = new BufferedReader(isr))
-		{
-			try(final FileOutputStream fos = new FileOutputStream(tempFile.toFile());
-				final OutputStreamWriter osr = new OutputStreamWriter(fos, this.execData.getCharset());
-				final BufferedWriter fileWriter = new BufferedWriter(osr))
+		if(!staged.isChanged())
+		{
+			return;
+		}
+		
+		final File file = staged.file();
+		if(this.transaction != null)
+		{
+			this.transaction.add(file.toPath(), staged.contents());
+			return;
+		}
+		
+		try
+		{
+			StagedCommit.replace(file.toPath(), staged.contents());
+			this.manifest.recordReplaced(file.toPath());
+		}
+		catch(final IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		finally
+		{
+			this.invalidateCachedListings(file.toPath());
+		}
+		this.execData.getLogger().info("Replaced contents inside " + file);
+	}
+	
+	/**
+	 * Replaces all files of the transaction. If this fails, the original files are restored.
+	 */
+	protected void commitTransaction()
+	{
+		try
+		{
+			this.transaction.commit();
+			for(final Path original : this.transaction.originals())
 			{
-				boolean alreadyReplaced = false;
-				for(String line = fileReader.readLine(); line != null; line = fileReader.readLine())
-				{
-					String lineToWrite = line;
-					final Matcher matcher = this.execData.getFindRegex().matcher(line);
-					if(matcher.find())
-					{
-						if(this.execData.isReplaceAll())
-						{
-							lineToWrite = matcher.replaceAll(this.execData.getReplaceValue());
-						}
-						else if(!alreadyReplaced)
-						{
-							lineToWrite = matcher.replaceFirst(this.execData.getReplaceValue());
-							alreadyReplaced = true;
-						}
-					}
-					fileWriter.write(lineToWrite + System.lineSeparator());
-				}
+				this.manifest.recordReplaced(original);
 			}
 		}
-		return tempFile;
+		catch(final IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		finally
+		{
+			this.transaction.originals().forEach(this::invalidateCachedListings);
+		}
+		this.transaction.originals().forEach(f -> this.execData.getLogger().info("Replaced contents inside " + f));
 	}
 	
-	private Path replace(final File file) throws IOException
+	protected void discard(final StagedContents staged)
 	{
-		final String contents = Files.readString(file.toPath(), this.execData.getCharset());
-		final Matcher matcher = this.execData.getFindRegex().matcher(contents);
-		Path tempFile = null;
-		if(matcher.find())
+		if(!staged.isChanged() || staged.contents().isPatch())
 		{
-			tempFile = this.createTempFile(file);
-			
-			Files.writeString(tempFile, this.execData.isReplaceAll()
-				? matcher.replaceAll(this.execData.getReplaceValue())
-				: matcher.replaceFirst(this.execData.getReplaceValue()));
+			return;
 		}
-		return tempFile;
+		
+		final Path tempFile = staged.contents().tempFile();
+		try
+		{
+			Files.deleteIfExists(tempFile);
+		}
+		catch(final IOException e)
+		{
+			this.execData.getLogger().warn("Failed to delete temp file " + tempFile, e);
+		}
+	}
+	
+	protected void discardTransaction()
+	{
+		if(this.transaction == null)
+		{
+			return;
+		}
+		try
+		{
+			this.transaction.discard();
+		}
+		catch(final IOException e)
+		{
+			this.execData.getLogger().warn("Failed to delete staged files", e);
+		}
+		this.transaction = null;
 	}
 	
-	protected Path createTempFile(final File original) throws IOException
+	/**
+	 * @param contents the replaced contents or <code>null</code> if nothing was replaced
+	 */
+	protected record StagedContents(File file, ReplacedContents contents)
 	{
-		return Files.createTempFile(original.getParentFile().toPath(), "tmp", "tmp");
+		public boolean isChanged()
+		{
+			return this.contents != null;
+		}
 	}
 }
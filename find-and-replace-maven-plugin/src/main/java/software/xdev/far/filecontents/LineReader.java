@@ -0,0 +1,222 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+
+/**
+ * Reads lines into a reused buffer without creating a string for each line.
+ * <p>
+ * Unlike {@link java.io.BufferedReader#readLine()} the line terminator ({@code \n}, {@code \r\n} or {@code \r}) is
+ * kept, so that unchanged lines can be written back exactly as they were read.
+ * </p>
+ * <p>
+ * The current line is only valid until {@link #next()} is called again.
+ * </p>
+ */
+public class LineReader implements Closeable
+{
+	private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+	
+	private final Reader reader;
+	private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+	private CharBuffer text = CharBuffer.wrap(this.buffer);
+	private int filled;
+	private boolean endOfInput;
+	
+	private int lineStart;
+	private int lineEnd;
+	private int terminatorEnd;
+	
+	public LineReader(final Reader reader)
+	{
+		this.reader = reader;
+	}
+	
+	/**
+	 * Advances to the next line.
+	 *
+	 * @return <code>false</code> if there are no more lines
+	 */
+	public boolean next() throws IOException
+	{
+		this.lineStart = this.terminatorEnd;
+		int pos = this.lineStart;
+		while(true)
+		{
+			pos = this.findTerminator(pos);
+			if(pos < 0)
+			{
+				return true;
+			}
+			if(this.endOfInput)
+			{
+				// Last line without a terminator
+				return this.lineStart < this.filled && this.endLine(this.filled, this.filled);
+			}
+			pos -= this.fill();
+		}
+	}
+	
+	/**
+	 * @return -1 if the end of the line was found or the position where the search must continue after more input
+	 * was read
+	 */
+	protected int findTerminator(final int from)
+	{
+		for(int pos = from; pos < this.filled; pos++)
+		{
+			final char c = this.buffer[pos];
+			if(c == '\n')
+			{
+				this.endLine(pos, pos + 1);
+				return -1;
+			}
+			if(c == '\r')
+			{
+				return this.endLineAtCarriageReturn(pos) ? -1 : pos;
+			}
+		}
+		return this.filled;
+	}
+	
+	/**
+	 * @return <code>false</code> if more input is required to decide whether the terminator is {@code \r\n}
+	 */
+	protected boolean endLineAtCarriageReturn(final int pos)
+	{
+		if(pos + 1 < this.filled)
+		{
+			return this.endLine(pos, this.buffer[pos + 1] == '\n' ? pos + 2 : pos + 1);
+		}
+		return this.endOfInput && this.endLine(pos, pos + 1);
+	}
+	
+	protected boolean endLine(final int end, final int endOfTerminator)
+	{
+		this.lineEnd = end;
+		this.terminatorEnd = endOfTerminator;
+		return true;
+	}
+	
+	/**
+	 * Moves the current line to the start of the buffer and reads more input behind it.
+	 *
+	 * @return the number of chars the current line was moved
+	 */
+	protected int fill() throws IOException
+	{
+		final int shift = this.lineStart;
+		final int remaining = this.filled - shift;
+		if(remaining == this.buffer.length)
+		{
+			final char[] grown = new char[this.buffer.length * 2];
+			System.arraycopy(this.buffer, shift, grown, 0, remaining);
+			this.buffer = grown;
+			this.text = CharBuffer.wrap(grown);
+		}
+		else if(shift > 0)
+		{
+			System.arraycopy(this.buffer, shift, this.buffer, 0, remaining);
+		}
+		this.filled = remaining;
+		this.lineStart = 0;
+		this.terminatorEnd = 0;
+		
+		final int read = this.reader.read(this.buffer, this.filled, this.buffer.length - this.filled);
+		if(read < 0)
+		{
+			this.endOfInput = true;
+		}
+		else
+		{
+			this.filled += read;
+		}
+		return shift;
+	}
+	
+	/**
+	 * Writes the current line including its terminator.
+	 *
+	 * @param replaced the current line after applying the rules or <code>null</code> if it is unchanged
+	 * @param scratch  used for copying the replaced line
+	 */
+	public void writeLine(final StringBuilder replaced, final Writer writer, final char[] scratch) throws IOException
+	{
+		if(replaced == null)
+		{
+			writer.write(this.buffer, this.lineStart, this.terminatorEnd - this.lineStart);
+			return;
+		}
+		
+		for(int start = 0; start < replaced.length(); start += scratch.length)
+		{
+			final int end = Math.min(replaced.length(), start + scratch.length);
+			replaced.getChars(start, end, scratch, 0);
+			writer.write(scratch, 0, end - start);
+		}
+		writer.write(this.buffer, this.lineEnd, this.terminatorEnd - this.lineEnd);
+	}
+	
+	/**
+	 * @return a view of the buffer containing the current line - e.g. for matching
+	 */
+	public CharSequence text()
+	{
+		return this.text;
+	}
+	
+	/**
+	 * @return if the text is the same as the current line (without its terminator)
+	 */
+	public boolean isLine(final CharSequence text)
+	{
+		return CharSequence.compare(text, CharBuffer.wrap(this.buffer, this.lineStart, this.lineEnd - this.lineStart))
+			== 0;
+	}
+	
+	public int lineStart()
+	{
+		return this.lineStart;
+	}
+	
+	/**
+	 * @return the end of the current line excluding its terminator
+	 */
+	public int lineEnd()
+	{
+		return this.lineEnd;
+	}
+	
+	/**
+	 * @return the end of the current line including its terminator
+	 */
+	public int terminatorEnd()
+	{
+		return this.terminatorEnd;
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		this.reader.close();
+	}
+}
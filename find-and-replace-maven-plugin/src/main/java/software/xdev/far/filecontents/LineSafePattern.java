@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.util.regex.Pattern;
+
+
+/**
+ * Checks if matching each line of a file separately finds the same matches as matching the whole file at once, so
+ * that large files can be streamed line by line.
+ * <p>
+ * This is the case if no match can contain or depend on a line terminator. The analysis is conservative: Anything that
+ * might match a line terminator (<code>\s</code>, negated character classes, <code>DOTALL</code>, ...), look beyond
+ * the current line (lookarounds, <code>\A</code>, <code>\z</code>, ...) or match an empty string (which would also
+ * match between <code>\r</code> and <code>\n</code>) is rejected.
+ * </p>
+ */
+public final class LineSafePattern
+{
+	private static final int UNSAFE_FLAGS = Pattern.DOTALL | Pattern.COMMENTS | Pattern.UNIX_LINES;
+	private static final String UNSAFE_INLINE_FLAGS = "sxd";
+	// Escapes that can match a line terminator, encode an arbitrary character or only match at the start/end of input
+	private static final String UNSAFE_ESCAPES = "nrRsvWDHXxu0cNpPAzZG";
+	
+	private LineSafePattern()
+	{
+	}
+	
+	public static boolean isLineSafe(final CompiledRule rule)
+	{
+		// A line terminator inserted by a replacement would be seen by the following rules
+		return isLineSafe(rule.findRegex())
+			&& rule.replaceValue().indexOf('\n') < 0
+			&& rule.replaceValue().indexOf('\r') < 0;
+	}
+	
+	public static boolean isLineSafe(final Pattern pattern)
+	{
+		if((pattern.flags() & UNSAFE_FLAGS) != 0
+			|| containsControlCharacter(pattern.pattern())
+			|| pattern.matcher("").matches())
+		{
+			return false;
+		}
+		return (pattern.flags() & Pattern.LITERAL) != 0 || isLineSafe(pattern.pattern());
+	}
+	
+	static boolean containsControlCharacter(final String regex)
+	{
+		return regex.chars().anyMatch(c -> c < ' ');
+	}
+	
+	static boolean isLineSafe(final String regex)
+	{
+		for(int i = 0; i < regex.length(); i++)
+		{
+			final char c = regex.charAt(i);
+			if(c == '\\')
+			{
+				i++;
+				if(regex.startsWith("Q", i))
+				{
+					// Quoted literal
+					final int end = regex.indexOf("\\E", i);
+					i = end < 0 ? regex.length() : end + 1;
+				}
+				else if(isUnsafeEscape(regex, i))
+				{
+					return false;
+				}
+			}
+			else if(c == '[' && regex.startsWith("^", i + 1)
+				|| c == '(' && regex.startsWith("?", i + 1) && isUnsafeGroup(regex, i + 2))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @param pos the position after the backslash
+	 */
+	static boolean isUnsafeEscape(final String regex, final int pos)
+	{
+		return pos >= regex.length()
+			|| UNSAFE_ESCAPES.indexOf(regex.charAt(pos)) >= 0
+			// A range starting with an escaped character (e.g. [\t-z]) may contain line terminators
+			|| regex.startsWith("-", pos + 1);
+	}
+	
+	/**
+	 * @param pos the position after <code>(?</code>
+	 */
+	static boolean isUnsafeGroup(final String regex, final int pos)
+	{
+		if(regex.startsWith("=", pos) || regex.startsWith("!", pos)
+			|| regex.startsWith("<=", pos) || regex.startsWith("<!", pos))
+		{
+			// Lookarounds can look beyond the current line
+			return true;
+		}
+		if(regex.startsWith("<", pos) || regex.startsWith(">", pos) || regex.startsWith(":", pos))
+		{
+			return false;
+		}
+		
+		// Inline flags, e.g. (?s) or (?i:...)
+		for(int i = pos; i < regex.length() && regex.charAt(i) != ')' && regex.charAt(i) != ':'; i++)
+		{
+			if(UNSAFE_INLINE_FLAGS.indexOf(regex.charAt(i)) >= 0)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
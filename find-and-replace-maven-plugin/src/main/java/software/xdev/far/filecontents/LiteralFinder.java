@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+
+/**
+ * Finds a literal inside the encoded bytes of a file using the Boyer-Moore-Horspool algorithm, so that the file
+ * doesn't need to be decoded at all.
+ * <p>
+ * Only used for UTF-8 and single byte encodings: In these a byte match of the encoded literal is always also a
+ * character match, as UTF-8 is self-synchronizing.
+ * </p>
+ * <p>
+ * Thread-safe: Can be used for multiple files concurrently.
+ * </p>
+ */
+public class LiteralFinder
+{
+	protected static final int BUFFER_SIZE = 64 * 1024;
+	
+	private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+	private static final int BYTE_VALUES = 256;
+	private static final int BYTE_MASK = 0xFF;
+	
+	private final byte[] needle;
+	private final byte[] replacement;
+	private final boolean replaceAll;
+	// How far the search can be advanced depending on the last byte of the current window
+	private final int[] shift = new int[BYTE_VALUES];
+	
+	public LiteralFinder(final byte[] needle, final byte[] replacement, final boolean replaceAll)
+	{
+		if(needle.length == 0)
+		{
+			throw new IllegalArgumentException("Literal must not be empty");
+		}
+		this.needle = needle;
+		this.replacement = replacement;
+		this.replaceAll = replaceAll;
+		
+		Arrays.fill(this.shift, needle.length);
+		for(int i = 0; i < needle.length - 1; i++)
+		{
+			this.shift[needle[i] & BYTE_MASK] = needle.length - 1 - i;
+		}
+	}
+	
+	/**
+	 * @return the finder or <code>null</code> if the pattern or the replacement is not a literal or the charset is not
+	 * supported
+	 */
+	public static LiteralFinder create(final FileContentsExecData execData, final CompiledRule rule)
+	{
+		final Charset charset = execData.getCharset();
+		final String literal = literalOf(rule.findRegex());
+		if(literal == null
+			|| literal.isEmpty()
+			// Matched line by line: Lines never contain line terminators
+			|| literal.indexOf('\n') >= 0
+			|| literal.indexOf('\r') >= 0
+			|| EncodedLength.forCharset(charset) == null
+			|| !charset.newEncoder().canEncode(literal))
+		{
+			return null;
+		}
+		
+		final Replacement replacement = Replacement.compile(rule.replaceValue(), rule.findRegex());
+		if(!replacement.isLiteral() || !charset.newEncoder().canEncode(replacement.expand(null)))
+		{
+			return null;
+		}
+		return new LiteralFinder(
+			literal.getBytes(charset),
+			replacement.expand(null).getBytes(charset),
+			rule.replaceAll());
+	}
+	
+	/**
+	 * @return the literal the pattern matches or <code>null</code> if the pattern is not a plain literal
+	 */
+	public static String literalOf(final Pattern pattern)
+	{
+		if((pattern.flags() & Pattern.LITERAL) != 0)
+		{
+			return pattern.pattern();
+		}
+		// Other flags (e.g. CASE_INSENSITIVE, COMMENTS) change how the literal matches - MULTILINE doesn't matter
+		if((pattern.flags() & ~Pattern.MULTILINE) != 0)
+		{
+			return null;
+		}
+		
+		final String regex = pattern.pattern();
+		final StringBuilder literal = new StringBuilder(regex.length());
+		for(int i = 0; i < regex.length(); i++)
+		{
+			final char c = regex.charAt(i);
+			if(c == '\\' && i + 1 < regex.length())
+			{
+				i = appendEscaped(regex, i + 1, literal);
+				if(i < 0)
+				{
+					return null;
+				}
+			}
+			else if(META_CHARACTERS.indexOf(c) >= 0)
+			{
+				return null;
+			}
+			else
+			{
+				literal.append(c);
+			}
+		}
+		return literal.toString();
+	}
+	
+	/**
+	 * @param start the position after the backslash
+	 * @return the position of the last consumed character or <code>-1</code> if the escape is not a literal
+	 */
+	private static int appendEscaped(final String regex, final int start, final StringBuilder literal)
+	{
+		final char c = regex.charAt(start);
+		if(c == 'Q')
+		{
+			final int end = regex.indexOf("\\E", start + 1);
+			literal.append(regex, start + 1, end < 0 ? regex.length() : end);
+			return end < 0 ? regex.length() : end + 1;
+		}
+		// Escaped letters and digits are character classes, back references, etc.
+		if(Character.isLetterOrDigit(c))
+		{
+			return -1;
+		}
+		literal.append(c);
+		return start;
+	}
+	
+	public List<Splice> find(final Path file) throws IOException
+	{
+		final List<Splice> splices = new ArrayList<>();
+		final int n = this.needle.length;
+		final byte[] array = new byte[Math.max(BUFFER_SIZE, n * 2)];
+		final ByteBuffer buffer = ByteBuffer.wrap(array);
+		// Position of the first byte of the buffer inside the file
+		long bufferOffset = 0;
+		
+		try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			while(true)
+			{
+				final boolean eof = channel.read(buffer) < 0;
+				final int limit = buffer.position();
+				
+				int position = 0;
+				for(int found = this.indexOf(array, position, limit);
+					found >= 0;
+					found = this.indexOf(array, position, limit))
+				{
+					splices.add(new Splice(bufferOffset + found, bufferOffset + found + n, this.replacement));
+					if(!this.replaceAll)
+					{
+						return splices;
+					}
+					position = found + n;
+				}
+				if(eof)
+				{
+					return splices;
+				}
+				
+				// Keep the bytes that could be the start of a match
+				final int keepFrom = Math.max(position, limit - (n - 1));
+				System.arraycopy(array, keepFrom, array, 0, limit - keepFrom);
+				buffer.position(limit - keepFrom);
+				bufferOffset += keepFrom;
+			}
+		}
+	}
+	
+	/**
+	 * @return the position of the needle inside [from, to) or <code>-1</code>
+	 */
+	protected int indexOf(final byte[] haystack, final int from, final int to)
+	{
+		final int last = this.needle.length - 1;
+		int i = from;
+		while(i + last < to)
+		{
+			int j = last;
+			while(haystack[i + j] == this.needle[j])
+			{
+				if(j == 0)
+				{
+					return i;
+				}
+				j--;
+			}
+			i += this.shift[haystack[i + last] & BYTE_MASK];
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+
+/**
+ * Unmaps memory-mapped buffers right away instead of when they are garbage collected.
+ * <p>
+ * As long as a file is mapped, it can't be replaced or deleted on Windows. There is no public API to unmap a buffer
+ * before Java 22, so <code>sun.misc.Unsafe#invokeCleaner</code> is used. If it's not available, the buffer is only
+ * unmapped when it's garbage collected.
+ * </p>
+ */
+public final class MappedBuffers
+{
+	private static final Object UNSAFE = lookupUnsafe();
+	private static final Method INVOKE_CLEANER = lookupInvokeCleaner(UNSAFE);
+	
+	private static Object lookupUnsafe()
+	{
+		try
+		{
+			final Field theUnsafe = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			return theUnsafe.get(null);
+		}
+		catch(final ReflectiveOperationException | RuntimeException e)
+		{
+			// Not available - e.g. the jdk.unsupported module is missing
+			return null;
+		}
+	}
+	
+	private static Method lookupInvokeCleaner(final Object unsafe)
+	{
+		if(unsafe == null)
+		{
+			return null;
+		}
+		try
+		{
+			return unsafe.getClass().getMethod("invokeCleaner", ByteBuffer.class);
+		}
+		catch(final NoSuchMethodException e)
+		{
+			return null;
+		}
+	}
+	
+	private MappedBuffers()
+	{
+	}
+	
+	/**
+	 * @return if buffers are unmapped right away
+	 */
+	public static boolean isUnmapSupported()
+	{
+		return INVOKE_CLEANER != null;
+	}
+	
+	/**
+	 * Unmaps the buffer. It must not be accessed afterwards - this would crash the JVM.
+	 */
+	public static void unmap(final MappedByteBuffer buffer)
+	{
+		if(INVOKE_CLEANER == null)
+		{
+			return;
+		}
+		try
+		{
+			INVOKE_CLEANER.invoke(UNSAFE, buffer);
+		}
+		catch(final ReflectiveOperationException e)
+		{
+			// Unmapped when it's garbage collected
+		}
+	}
+}
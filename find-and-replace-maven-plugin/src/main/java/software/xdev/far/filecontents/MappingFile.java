@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+
+/**
+ * Reads literal find and replace pairs from a UTF-8 encoded file.
+ * <p>
+ * Supported formats:
+ * </p>
+ * <ul>
+ *     <li><code>.csv</code> - One <code>find,replace</code> pair per line, split at the first comma. Empty lines and
+ *     lines starting with <code>#</code> are ignored.</li>
+ *     <li>Any other file is read as <code>.properties</code> file - the key is the literal to find</li>
+ * </ul>
+ */
+public final class MappingFile
+{
+	private static final String CSV_EXTENSION = ".csv";
+	private static final String COMMENT = "#";
+	
+	private MappingFile()
+	{
+	}
+	
+	/**
+	 * @return the literals to find mapped to their replacement
+	 */
+	public static Map<String, String> read(final Path file) throws IOException
+	{
+		final Map<String, String> mapping = file.getFileName().toString().toLowerCase(Locale.ROOT)
+			.endsWith(CSV_EXTENSION)
+			? readCsv(file)
+			: readProperties(file);
+		if(mapping.containsKey(""))
+		{
+			throw new IllegalArgumentException("The literal to find must not be empty in mapping file " + file);
+		}
+		return mapping;
+	}
+	
+	private static Map<String, String> readCsv(final Path file) throws IOException
+	{
+		final Map<String, String> mapping = new LinkedHashMap<>();
+		final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		for(int i = 0; i < lines.size(); i++)
+		{
+			final String line = lines.get(i);
+			if(line.isBlank() || line.startsWith(COMMENT))
+			{
+				continue;
+			}
+			final int separator = line.indexOf(',');
+			if(separator < 0)
+			{
+				throw new IllegalArgumentException(String.format(
+					"Line %d of mapping file %s is not a find,replace pair",
+					i + 1,
+					file));
+			}
+			mapping.put(line.substring(0, separator), line.substring(separator + 1));
+		}
+		return mapping;
+	}
+	
+	private static Map<String, String> readProperties(final Path file) throws IOException
+	{
+		final Properties properties = new Properties();
+		try(final Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+		{
+			properties.load(reader);
+		}
+		final Map<String, String> mapping = new LinkedHashMap<>();
+		properties.stringPropertyNames().stream()
+			.sorted()
+			.forEach(key -> mapping.put(key, properties.getProperty(key)));
+		return mapping;
+	}
+}
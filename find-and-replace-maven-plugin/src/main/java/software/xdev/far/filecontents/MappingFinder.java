@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Replaces many literals at once using an {@link AhoCorasick} automaton.
+ * <p>
+ * For UTF-8 and ASCII compatible single byte encodings the encoded bytes of the file are searched directly (each byte
+ * is passed to the automaton as character), so that the file doesn't need to be decoded and is processed in chunks.
+ * Otherwise the decoded contents are searched.
+ * </p>
+ * <p>
+ * Thread-safe: Can be used for multiple files concurrently.
+ * </p>
+ */
+public class MappingFinder
+{
+	private static final int BYTE_MASK = 0xFF;
+	
+	private final AhoCorasick automaton;
+	private final String[] replacements;
+	// null if the decoded contents are searched
+	private final byte[][] encodedReplacements;
+	private final boolean replaceAll;
+	
+	public MappingFinder(final Map<String, String> mapping, final Charset charset, final boolean replaceAll)
+	{
+		this.replaceAll = replaceAll;
+		this.replacements = mapping.values().toArray(String[]::new);
+		
+		final CharsetEncoder encoder = charset.newEncoder();
+		final boolean matchBytes = EncodedLength.forCharset(charset) != null
+			&& mapping.entrySet().stream().allMatch(e -> encoder.canEncode(e.getKey())
+				&& encoder.canEncode(e.getValue()));
+		if(matchBytes)
+		{
+			// ISO-8859-1 maps every byte to the character with the same value
+			this.automaton = new AhoCorasick(mapping.keySet().stream()
+				.map(key -> new String(key.getBytes(charset), StandardCharsets.ISO_8859_1))
+				.toList());
+			this.encodedReplacements = mapping.values().stream()
+				.map(value -> value.getBytes(charset))
+				.toArray(byte[][]::new);
+		}
+		else
+		{
+			this.automaton = new AhoCorasick(List.copyOf(mapping.keySet()));
+			this.encodedReplacements = null;
+		}
+	}
+	
+	/**
+	 * @return if {@link #find(Path)} can be used - otherwise {@link #replace(String)} has to be used
+	 */
+	public boolean isMatchingBytes()
+	{
+		return this.encodedReplacements != null;
+	}
+	
+	public List<Splice> find(final Path file) throws IOException
+	{
+		final List<Splice> splices = new ArrayList<>();
+		final AhoCorasick.Searcher searcher = this.automaton.newSearcher((start, key) -> {
+			splices.add(new Splice(start, start + this.automaton.getKeyLength(key), this.encodedReplacements[key]));
+			return this.replaceAll;
+		});
+		
+		final ByteBuffer buffer = ByteBuffer.allocate(LiteralFinder.BUFFER_SIZE);
+		try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			while(channel.read(buffer) >= 0)
+			{
+				buffer.flip();
+				while(buffer.hasRemaining())
+				{
+					if(!searcher.next((char)(buffer.get() & BYTE_MASK)))
+					{
+						return splices;
+					}
+				}
+				buffer.clear();
+			}
+		}
+		searcher.finish();
+		return splices;
+	}
+	
+	/**
+	 * @return the replaced text or <code>null</code> if nothing matched
+	 */
+	public String replace(final String text)
+	{
+		final StringBuilder sb = new StringBuilder(text.length());
+		final int[] copied = {0};
+		final AhoCorasick.Searcher searcher = this.automaton.newSearcher((start, key) -> {
+			sb.append(text, copied[0], (int)start).append(this.replacements[key]);
+			copied[0] = (int)start + this.automaton.getKeyLength(key);
+			return this.replaceAll;
+		});
+		
+		boolean searching = true;
+		for(int i = 0; searching && i < text.length(); i++)
+		{
+			searching = searcher.next(text.charAt(i));
+		}
+		if(searching)
+		{
+			searcher.finish();
+		}
+		// Matches are never empty
+		if(copied[0] == 0)
+		{
+			return null;
+		}
+		return sb.append(text, copied[0], text.length()).toString();
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.nio.file.Path;
+
+
+/**
+ * Options that control which files are read and how.
+ */
+public class ReadOptions
+{
+	public static final long UNLIMITED_SIZE = Long.MAX_VALUE;
+	
+	private final ReplaceStrategy strategy;
+	private final int maxMatchSpan;
+	private final long minFileSize;
+	private final long maxFileSize;
+	private final BinaryFileDetector binaryFileDetector;
+	private final Path manifestFile;
+	
+	public ReadOptions(
+		final ReplaceStrategy strategy,
+		final int maxMatchSpan,
+		final long minFileSize,
+		final long maxFileSize,
+		final BinaryFileDetector binaryFileDetector,
+		final Path manifestFile)
+	{
+		this.strategy = strategy;
+		this.maxMatchSpan = maxMatchSpan;
+		this.minFileSize = minFileSize;
+		this.maxFileSize = maxFileSize;
+		this.binaryFileDetector = binaryFileDetector;
+		this.manifestFile = manifestFile;
+	}
+	
+	/**
+	 * @param size the size of the file in bytes
+	 */
+	public boolean isSizeInRange(final long size)
+	{
+		return size >= this.minFileSize && size <= this.maxFileSize;
+	}
+	
+	/**
+	 * @return if the strategy is {@link ReplaceStrategy#AUTO} and the file is too large to be read in memory
+	 */
+	public boolean isLargeForAuto(final long size)
+	{
+		return this.strategy == ReplaceStrategy.AUTO && size > ReplaceStrategy.AUTO_IN_MEMORY_MAX_SIZE;
+	}
+	
+	/**
+	 * @param size the size of the file in bytes
+	 * @return the strategy to use for a file that is matched as a whole - never {@link ReplaceStrategy#AUTO}
+	 */
+	public ReplaceStrategy strategyFor(final long size)
+	{
+		if(this.strategy != ReplaceStrategy.AUTO)
+		{
+			return this.strategy;
+		}
+		if(size <= ReplaceStrategy.AUTO_IN_MEMORY_MAX_SIZE)
+		{
+			return ReplaceStrategy.IN_MEMORY;
+		}
+		return size <= ReplaceStrategy.AUTO_MEMORY_MAPPED_MAX_SIZE
+			? ReplaceStrategy.MEMORY_MAPPED
+			: ReplaceStrategy.CHUNKED;
+	}
+	
+	public ReplaceStrategy getStrategy()
+	{
+		return this.strategy;
+	}
+	
+	public int getMaxMatchSpan()
+	{
+		return this.maxMatchSpan;
+	}
+	
+	public long getMinFileSize()
+	{
+		return this.minFileSize;
+	}
+	
+	public long getMaxFileSize()
+	{
+		return this.maxFileSize;
+	}
+	
+	/**
+	 * @return the detector or <code>null</code> if binary files should not be skipped
+	 */
+	public BinaryFileDetector getBinaryFileDetector()
+	{
+		return this.binaryFileDetector;
+	}
+	
+	/**
+	 * @return the {@link BuildManifest} of this execution or <code>null</code> if all files are processed on each run
+	 */
+	public Path getManifestFile()
+	{
+		return this.manifestFile;
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+
+/**
+ * How a file is read when it is matched as a whole (<code>replaceLineBased=false</code>).
+ */
+public enum ReplaceStrategy
+{
+	/**
+	 * Selected for each file based on its size and the pattern:
+	 * <ul>
+	 *     <li>Small files are read {@link #IN_MEMORY}</li>
+	 *     <li>Larger files are matched line by line if that finds the same matches (see {@link LineSafePattern}),
+	 *     otherwise they are {@link #MEMORY_MAPPED} or - if they are very large - {@link #CHUNKED}</li>
+	 * </ul>
+	 */
+	AUTO("auto"),
+	/**
+	 * The whole file is read into a String.
+	 */
+	IN_MEMORY("in-memory"),
+	/**
+	 * The file is memory-mapped and decoded into a reusable buffer outside the heap.
+	 */
+	MEMORY_MAPPED("memory-mapped"),
+	/**
+	 * The file is decoded and matched in chunks using a sliding window, so that the required memory is bounded by
+	 * the maximum length of a match.
+	 */
+	CHUNKED("chunked");
+	
+	public static final long AUTO_IN_MEMORY_MAX_SIZE = 8L * 1024 * 1024;
+	public static final long AUTO_MEMORY_MAPPED_MAX_SIZE = 256L * 1024 * 1024;
+	
+	private final String value;
+	
+	ReplaceStrategy(final String value)
+	{
+		this.value = value;
+	}
+	
+	public String getValue()
+	{
+		return this.value;
+	}
+	
+	/**
+	 * Multiple rules are only matched line by line or against the whole file read into memory - the strategies that
+	 * bound the required memory only support a single rule.
+	 *
+	 * @return if this strategy falls back to reading the whole file into memory for the rules
+	 */
+	public boolean fallsBackToInMemory(final List<CompiledRule> rules)
+	{
+		if(rules.size() < 2)
+		{
+			return false;
+		}
+		return this == MEMORY_MAPPED
+			|| this == CHUNKED
+			|| this == AUTO && !rules.stream().allMatch(LineSafePattern::isLineSafe);
+	}
+	
+	public static ReplaceStrategy fromValue(final String value)
+	{
+		return Arrays.stream(values())
+			.filter(s -> s.value.equals(value.toLowerCase(Locale.ROOT)))
+			.findFirst()
+			.orElseThrow(() -> new IllegalArgumentException(String.format(
+				"Unknown strategy '%s' - possible values: %s",
+				value,
+				Arrays.stream(values()).map(ReplaceStrategy::getValue).collect(Collectors.joining(", ")))));
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.nio.file.Path;
+import java.util.List;
+
+
+/**
+ * The replaced contents of a file: Either a temp file containing the new contents or - if the length of the file
+ * doesn't change - the patches to write directly into the original file.
+ *
+ * @param tempFile <code>null</code> if the file is patched
+ * @param patches  <code>null</code> if the file is replaced by the temp file
+ */
+public record ReplacedContents(Path tempFile, List<Splice> patches)
+{
+	/**
+	 * @return <code>null</code> if the temp file is <code>null</code> (nothing was replaced)
+	 */
+	public static ReplacedContents inTempFile(final Path tempFile)
+	{
+		return tempFile != null ? new ReplacedContents(tempFile, null) : null;
+	}
+	
+	public static ReplacedContents patches(final List<Splice> patches)
+	{
+		return new ReplacedContents(null, patches);
+	}
+	
+	public boolean isPatch()
+	{
+		return this.patches != null;
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * A replacement string (as used by {@link Matcher#replaceAll(String)}) that is parsed only once.
+ * <p>
+ * Supports the same syntax: <code>$n</code> and <code>${name}</code> refer to captured groups and <code>\</code>
+ * escapes the next character.
+ * </p>
+ */
+public final class Replacement
+{
+	private static final int DECIMAL = 10;
+	
+	private final List<Part> parts;
+	
+	private Replacement(final List<Part> parts)
+	{
+		this.parts = parts;
+	}
+	
+	/**
+	 * @throws IllegalArgumentException if the replacement is invalid
+	 * @throws IndexOutOfBoundsException if the replacement refers to a group that doesn't exist in the pattern
+	 */
+	public static Replacement compile(final String replacement, final Pattern pattern)
+	{
+		final int groupCount = pattern.matcher("").groupCount();
+		final List<Part> parts = new ArrayList<>();
+		final StringBuilder literal = new StringBuilder();
+		int cursor = 0;
+		while(cursor < replacement.length())
+		{
+			final char c = replacement.charAt(cursor++);
+			if(c == '\\')
+			{
+				if(cursor == replacement.length())
+				{
+					throw new IllegalArgumentException("character to be escaped is missing");
+				}
+				literal.append(replacement.charAt(cursor++));
+			}
+			else if(c == '$')
+			{
+				flushLiteral(literal, parts);
+				cursor = parseGroupReference(replacement, cursor, groupCount, parts);
+			}
+			else
+			{
+				literal.append(c);
+			}
+		}
+		flushLiteral(literal, parts);
+		return new Replacement(List.copyOf(parts));
+	}
+	
+	private static void flushLiteral(final StringBuilder literal, final List<Part> parts)
+	{
+		if(!literal.isEmpty())
+		{
+			parts.add(new Part(literal.toString(), -1, null));
+			literal.setLength(0);
+		}
+	}
+	
+	/**
+	 * @return the position after the group reference
+	 */
+	private static int parseGroupReference(
+		final String replacement,
+		final int start,
+		final int groupCount,
+		final List<Part> parts)
+	{
+		if(start == replacement.length())
+		{
+			throw new IllegalArgumentException("Illegal group reference: group index is missing");
+		}
+		
+		int cursor = start;
+		if(replacement.charAt(cursor) == '{')
+		{
+			final int end = replacement.indexOf('}', ++cursor);
+			if(end < 0)
+			{
+				throw new IllegalArgumentException("named capturing group is missing trailing '}'");
+			}
+			if(end == cursor)
+			{
+				throw new IllegalArgumentException("named capturing group has 0 length name");
+			}
+			parts.add(new Part(null, -1, replacement.substring(cursor, end)));
+			return end + 1;
+		}
+		
+		if(!isDigit(replacement.charAt(cursor)))
+		{
+			throw new IllegalArgumentException("Illegal group reference");
+		}
+		int group = replacement.charAt(cursor++) - '0';
+		// Like Matcher: Consume further digits as long as the group exists
+		while(cursor < replacement.length())
+		{
+			if(!isDigit(replacement.charAt(cursor))
+				|| group * DECIMAL + replacement.charAt(cursor) - '0' > groupCount)
+			{
+				break;
+			}
+			group = group * DECIMAL + replacement.charAt(cursor) - '0';
+			cursor++;
+		}
+		if(group > groupCount)
+		{
+			throw new IndexOutOfBoundsException("No group " + group);
+		}
+		parts.add(new Part(null, group, null));
+		return cursor;
+	}
+	
+	private static boolean isDigit(final char c)
+	{
+		return c >= '0' && c <= '9';
+	}
+	
+	/**
+	 * @return if the replacement doesn't refer to any group
+	 */
+	public boolean isLiteral()
+	{
+		return this.parts.stream().allMatch(p -> p.literal() != null);
+	}
+	
+	/**
+	 * @return the replacement for the current match of the matcher
+	 */
+	public String expand(final Matcher matcher)
+	{
+		if(this.parts.size() == 1 && this.parts.get(0).literal() != null)
+		{
+			return this.parts.get(0).literal();
+		}
+		
+		final StringBuilder sb = new StringBuilder();
+		for(final Part part : this.parts)
+		{
+			if(part.literal() != null)
+			{
+				sb.append(part.literal());
+				continue;
+			}
+			
+			final String value = part.groupName() != null
+				? matcher.group(part.groupName())
+				: matcher.group(part.group());
+			if(value != null)
+			{
+				sb.append(value);
+			}
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Appends the replacement for the current match of the matcher without creating intermediate strings.
+	 *
+	 * @param text the input of the matcher
+	 */
+	public void appendTo(final Matcher matcher, final CharSequence text, final StringBuilder sb)
+	{
+		for(final Part part : this.parts)
+		{
+			if(part.literal() != null)
+			{
+				sb.append(part.literal());
+				continue;
+			}
+			
+			final boolean named = part.groupName() != null;
+			final int start = named ? matcher.start(part.groupName()) : matcher.start(part.group());
+			if(start >= 0)
+			{
+				sb.append(text, start, named ? matcher.end(part.groupName()) : matcher.end(part.group()));
+			}
+		}
+	}
+	
+	/**
+	 * Either a literal, a group number or a group name.
+	 */
+	private record Part(String literal, int group, String groupName)
+	{
+	}
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.util.regex.Pattern;
+
+
+/**
+ * Extracts a literal from a regular expression that every match must contain.
+ * <p>
+ * Files that don't contain the literal can't match, so they can be skipped without decoding them. The analysis is
+ * conservative: Only top level literals are considered and anything that is not fully understood (groups, character
+ * classes, escapes like <code>\d</code>, ...) ends the current literal. A pattern with a top level alternation or with
+ * flags that change how literals match (e.g. case insensitive) has no required literal.
+ * </p>
+ */
+public final class RequiredLiteral
+{
+	// Flags that don't change how a literal matches
+	private static final int NEUTRAL_FLAGS = Pattern.MULTILINE | Pattern.DOTALL | Pattern.UNIX_LINES;
+	private static final String UNSUPPORTED_INLINE_FLAGS = "ixuU";
+	
+	private RequiredLiteral()
+	{
+	}
+	
+	/**
+	 * @return the longest required literal or <code>null</code> if there is none
+	 */
+	public static String of(final Pattern pattern)
+	{
+		if((pattern.flags() & Pattern.LITERAL) != 0)
+		{
+			return pattern.pattern().isEmpty() ? null : pattern.pattern();
+		}
+		if((pattern.flags() & ~NEUTRAL_FLAGS) != 0)
+		{
+			return null;
+		}
+		return new Analyzer(pattern.pattern()).analyze();
+	}
+	
+	private static final class Analyzer
+	{
+		private final String regex;
+		// The current literal
+		private String run = "";
+		private String longest = "";
+		// If the last atom is the last character of the current run - a quantifier makes it optional
+		private boolean lastAtomInRun;
+		
+		Analyzer(final String regex)
+		{
+			this.regex = regex;
+		}
+		
+		String analyze()
+		{
+			for(int i = 0; i < this.regex.length(); i++)
+			{
+				final char c = this.regex.charAt(i);
+				switch(c)
+				{
+					case '\\' -> i = this.escape(i + 1);
+					case '[' -> i = this.skipCharClass(i);
+					case '(' -> i = this.group(i);
+					case '|' -> i = -1;
+					case '?', '*' -> this.optionalQuantifier();
+					case '{' -> i = this.boundedQuantifier(i);
+					case '+', '.', '^', '$' -> this.endRun();
+					default -> this.append(c);
+				}
+				if(i < 0)
+				{
+					// Top level alternation or flags that can't be handled
+					return null;
+				}
+			}
+			this.endRun();
+			return this.longest.isEmpty() ? null : this.longest;
+		}
+		
+		private void append(final String s)
+		{
+			this.run += s;
+			this.lastAtomInRun = true;
+		}
+		
+		private void append(final char c)
+		{
+			this.run += c;
+			this.lastAtomInRun = true;
+		}
+		
+		private void endRun()
+		{
+			if(this.run.length() > this.longest.length())
+			{
+				this.longest = this.run;
+			}
+			this.run = "";
+			this.lastAtomInRun = false;
+		}
+		
+		private void optionalQuantifier()
+		{
+			if(this.lastAtomInRun)
+			{
+				final int last = this.run.length() - 1;
+				final boolean surrogatePair = last > 0 && Character.isLowSurrogate(this.run.charAt(last))
+					&& Character.isHighSurrogate(this.run.charAt(last - 1));
+				this.run = this.run.substring(0, surrogatePair ? last - 1 : last);
+			}
+			this.endRun();
+		}
+		
+		private int boundedQuantifier(final int start)
+		{
+			// Conservative: The atom might be optional (e.g. {0,3})
+			this.optionalQuantifier();
+			final int end = this.regex.indexOf('}', start);
+			return end < 0 ? this.regex.length() : end;
+		}
+		
+		/**
+		 * @param start the position after the backslash
+		 * @return the position of the last consumed character
+		 */
+		private int escape(final int start)
+		{
+			if(start >= this.regex.length())
+			{
+				return start;
+			}
+			final char c = this.regex.charAt(start);
+			if(c == 'Q')
+			{
+				final int end = this.regex.indexOf("\\E", start + 1);
+				this.append(this.regex.substring(start + 1, end < 0 ? this.regex.length() : end));
+				return end < 0 ? this.regex.length() : end + 1;
+			}
+			if(!Character.isLetterOrDigit(c))
+			{
+				this.append(c);
+				return start;
+			}
+			
+			// Character classes, back references, control characters, ...
+			this.endRun();
+			return this.skipEscapeArguments(start + 1);
+		}
+		
+		/**
+		 * Skips arguments like <code>\\p{Lu}</code>, <code>\\k&lt;name&gt;</code>, <code>\\x41</code> or
+		 * <code>\\0101</code> as they are not literals.
+		 *
+		 * @return the position of the last consumed character
+		 */
+		private int skipEscapeArguments(final int start)
+		{
+			int i = start;
+			while(i < this.regex.length() && Character.isLetterOrDigit(this.regex.charAt(i)))
+			{
+				i++;
+			}
+			if(i >= this.regex.length() || this.regex.charAt(i) != '{' && this.regex.charAt(i) != '<')
+			{
+				return i - 1;
+			}
+			final int end = this.regex.indexOf(this.regex.charAt(i) == '{' ? '}' : '>', i);
+			return end < 0 ? this.regex.length() : end;
+		}
+		
+		private int skipCharClass(final int start)
+		{
+			this.endRun();
+			int depth = 0;
+			for(int i = start; i < this.regex.length(); i++)
+			{
+				final char c = this.regex.charAt(i);
+				if(c == '\\')
+				{
+					i = this.skipEscape(i);
+				}
+				else if(c == '[')
+				{
+					depth++;
+					i = this.skipLeadingBracket(i);
+				}
+				else if(c == ']' && --depth == 0)
+				{
+					return i;
+				}
+			}
+			return this.regex.length();
+		}
+		
+		/**
+		 * A <code>]</code> directly after <code>[</code> or <code>[^</code> is a literal.
+		 */
+		private int skipLeadingBracket(final int open)
+		{
+			int i = open;
+			if(i + 1 < this.regex.length() && this.regex.charAt(i + 1) == '^')
+			{
+				i++;
+			}
+			if(i + 1 < this.regex.length() && this.regex.charAt(i + 1) == ']')
+			{
+				i++;
+			}
+			return i;
+		}
+		
+		/**
+		 * @return the position of the closing parenthesis or <code>-1</code> if the group sets flags that can't be
+		 * handled
+		 */
+		private int group(final int start)
+		{
+			this.endRun();
+			if(this.setsUnsupportedFlags(start))
+			{
+				return -1;
+			}
+			
+			int depth = 0;
+			for(int i = start; i < this.regex.length(); i++)
+			{
+				final char c = this.regex.charAt(i);
+				switch(c)
+				{
+					case '\\' -> i = this.skipEscape(i);
+					case '[' -> i = this.skipCharClass(i);
+					case '(' -> depth++;
+					case ')' ->
+					{
+						if(--depth == 0)
+						{
+							return i;
+						}
+					}
+					default ->
+					{
+						// Part of the group
+					}
+				}
+			}
+			return this.regex.length();
+		}
+		
+		private int skipEscape(final int backslash)
+		{
+			if(backslash + 1 < this.regex.length() && this.regex.charAt(backslash + 1) == 'Q')
+			{
+				final int end = this.regex.indexOf("\\E", backslash + 2);
+				return end < 0 ? this.regex.length() : end + 1;
+			}
+			return backslash + 1;
+		}
+		
+		/**
+		 * @return if the group is an inline flag expression like <code>(?i)</code> that changes how the rest of the
+		 * pattern matches literals
+		 */
+		private boolean setsUnsupportedFlags(final int start)
+		{
+			if(start + 1 >= this.regex.length() || this.regex.charAt(start + 1) != '?')
+			{
+				return false;
+			}
+			boolean unsupported = false;
+			int i = start + 2;
+			for(; i < this.regex.length() && (Character.isLetter(this.regex.charAt(i)) || this.regex.charAt(i) == '-');
+				i++)
+			{
+				unsupported |= UNSUPPORTED_INLINE_FLAGS.indexOf(this.regex.charAt(i)) >= 0;
+			}
+			// Flags of a group like (?i:...) only apply inside of the group
+			return unsupported && i < this.regex.length() && this.regex.charAt(i) == ')';
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+/**
+ * A find and replace rule that is configured inside <code>&lt;rules&gt;</code>.
+ * <p>
+ * Example:
+ * </p>
+ * <pre>
+ * &lt;rule&gt;
+ *     &lt;findRegex&gt;^@jakarta\.annotation\.Generated.*(\r?\n)&lt;/findRegex&gt;
+ *     &lt;replaceValue&gt;&lt;/replaceValue&gt;
+ * &lt;/rule&gt;
+ * </pre>
+ */
+public class Rule
+{
+	/**
+	 * The regex string to find.
+	 */
+	private String findRegex;
+	
+	/**
+	 * The value to replace the matching findRegex with.
+	 */
+	private String replaceValue;
+	
+	/**
+	 * Whether all matches or just the first match is replaced. Defaults to <code>replaceAll</code> of the execution.
+	 */
+	private Boolean replaceAll;
+	
+	public Rule()
+	{
+	}
+	
+	public Rule(final String findRegex, final String replaceValue)
+	{
+		this.findRegex = findRegex;
+		this.replaceValue = replaceValue;
+	}
+	
+	public String getFindRegex()
+	{
+		return this.findRegex;
+	}
+	
+	public void setFindRegex(final String findRegex)
+	{
+		this.findRegex = findRegex;
+	}
+	
+	public String getReplaceValue()
+	{
+		return this.replaceValue;
+	}
+	
+	public void setReplaceValue(final String replaceValue)
+	{
+		this.replaceValue = replaceValue;
+	}
+	
+	public Boolean getReplaceAll()
+	{
+		return this.replaceAll;
+	}
+	
+	public void setReplaceAll(final Boolean replaceAll)
+	{
+		this.replaceAll = replaceAll;
+	}
+}
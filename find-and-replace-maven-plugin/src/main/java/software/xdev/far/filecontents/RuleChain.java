@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.util.List;
+import java.util.regex.Matcher;
+
+
+/**
+ * Applies multiple rules in order: Each rule is applied to the result of the previous one.
+ * <p>
+ * A rule that only replaces the first match is applied until it matched once, so that the text can be passed in
+ * pieces (e.g. line by line).
+ * </p>
+ * <p>
+ * Not thread-safe: Create a new instance for each file.
+ * </p>
+ */
+public class RuleChain
+{
+	private final List<CompiledRule> rules;
+	private final Matcher[] matchers;
+	private final boolean[] done;
+	// Reused for each line so that no intermediate strings are created
+	@SuppressWarnings("PMD.AvoidStringBufferField")
+	private final StringBuilder buffer = new StringBuilder();
+	@SuppressWarnings("PMD.AvoidStringBufferField")
+	private final StringBuilder otherBuffer = new StringBuilder();
+	private int matchingRules;
+	
+	public RuleChain(final List<CompiledRule> rules)
+	{
+		this.rules = rules;
+		this.matchers = rules.stream().map(r -> r.findRegex().matcher("")).toArray(Matcher[]::new);
+		this.done = new boolean[rules.size()];
+	}
+	
+	/**
+	 * @return the text after applying all rules
+	 */
+	public String apply(final String text)
+	{
+		final StringBuilder result = this.apply(text, 0, text.length());
+		return result != null ? result.toString() : text;
+	}
+	
+	/**
+	 * Applies all rules to a region of the text, as if the region was a separate string.
+	 *
+	 * @return the region after applying all rules or <code>null</code> if no rule matched; only valid until this
+	 * method is called again
+	 */
+	public StringBuilder apply(final CharSequence text, final int start, final int end)
+	{
+		CharSequence current = text;
+		int from = start;
+		int to = end;
+		StringBuilder result = null;
+		for(int i = 0; i < this.rules.size(); i++)
+		{
+			if(this.done[i])
+			{
+				continue;
+			}
+			// Default (opaque and anchoring) bounds: The region behaves like a separate string
+			final Matcher matcher = this.matchers[i].reset(current).region(from, to);
+			if(!matcher.find())
+			{
+				continue;
+			}
+			
+			this.matchingRules++;
+			final CompiledRule rule = this.rules.get(i);
+			// Alternate between both buffers as the current text may be the result of the previous rule
+			result = current == this.buffer ? this.otherBuffer : this.buffer;
+			result.setLength(0);
+			
+			int last = from;
+			do
+			{
+				result.append(current, last, matcher.start());
+				rule.replacement().appendTo(matcher, current, result);
+				last = matcher.end();
+			}
+			while(rule.replaceAll() && matcher.find());
+			result.append(current, last, to);
+			
+			if(!rule.replaceAll())
+			{
+				this.done[i] = true;
+			}
+			current = result;
+			from = 0;
+			to = result.length();
+		}
+		return result;
+	}
+	
+	/**
+	 * @return if any rule matched so far
+	 */
+	public boolean hasMatched()
+	{
+		return this.matchingRules > 0;
+	}
+}
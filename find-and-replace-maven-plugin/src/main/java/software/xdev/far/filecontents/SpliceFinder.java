@@ -0,0 +1,380 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Finds the matches inside a file and returns them as byte ranges ({@link Splice}s) of the file, so that the
+ * unchanged parts of the file don't need to be encoded again when writing it.
+ * <p>
+ * Thread-safe: Can be used for multiple files concurrently.
+ * </p>
+ */
+public class SpliceFinder
+{
+	protected static final int BUFFER_SIZE = 64 * 1024;
+	protected static final long MAP_WINDOW_SIZE = 64L * 1024 * 1024;
+	
+	private final Pattern pattern;
+	private final Replacement replacement;
+	private final boolean replaceAll;
+	private final Charset charset;
+	private final EncodedLength encodedLength;
+	
+	public SpliceFinder(
+		final Pattern pattern,
+		final Replacement replacement,
+		final boolean replaceAll,
+		final Charset charset,
+		final EncodedLength encodedLength)
+	{
+		this.pattern = pattern;
+		this.replacement = replacement;
+		this.replaceAll = replaceAll;
+		this.charset = charset;
+		this.encodedLength = encodedLength;
+	}
+	
+	/**
+	 * @return the finder or <code>null</code> if the charset is not supported
+	 */
+	public static SpliceFinder create(final FileContentsExecData execData, final CompiledRule rule)
+	{
+		final EncodedLength encodedLength = EncodedLength.forCharset(execData.getCharset());
+		if(encodedLength == null)
+		{
+			return null;
+		}
+		return new SpliceFinder(
+			rule.findRegex(),
+			Replacement.compile(rule.replaceValue(), rule.findRegex()),
+			rule.replaceAll(),
+			execData.getCharset(),
+			encodedLength);
+	}
+	
+	/**
+	 * Matches the whole contents of the file at once.
+	 *
+	 * @throws CharacterCodingException if the file can't be decoded using the charset
+	 */
+	public List<Splice> find(final Path file) throws IOException
+	{
+		final List<Splice> splices = new ArrayList<>();
+		final String contents = Files.readString(file, this.charset);
+		this.addSplices(this.pattern.matcher(contents), contents, 0, splices);
+		return splices;
+	}
+	
+	/**
+	 * Matches the whole contents of the file at once, without loading it into the heap: The file is memory-mapped and
+	 * decoded into a buffer of the pool.
+	 * <p>
+	 * The file is mapped in windows of a bounded size, each of which is unmapped right after it was decoded - see
+	 * {@link MappedBuffers}.
+	 * </p>
+	 *
+	 * @throws CharacterCodingException if the file can't be decoded using the charset
+	 */
+	public List<Splice> findMapped(final Path file, final CharBufferPool pool) throws IOException
+	{
+		try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			final long size = channel.size();
+			final CharsetDecoder decoder = this.charset.newDecoder();
+			final CharBuffer chars = pool.acquire((long)Math.ceil(size * (double)decoder.maxCharsPerByte()));
+			try
+			{
+				decodeMapped(channel, size, MAP_WINDOW_SIZE, decoder, chars);
+				
+				final List<Splice> splices = new ArrayList<>();
+				this.addSplices(this.pattern.matcher(chars), chars, 0, splices);
+				return splices;
+			}
+			finally
+			{
+				pool.release(chars);
+			}
+		}
+	}
+	
+	/**
+	 * Matches the file in chunks, so that the required memory doesn't depend on the size of the file.
+	 *
+	 * @param maxMatchSpan the maximum length of a match in characters
+	 * @throws CharacterCodingException if the file can't be decoded using the charset
+	 * @see WindowScanner
+	 */
+	public List<Splice> findChunked(final Path file, final int maxMatchSpan) throws IOException
+	{
+		final List<Splice> splices = new ArrayList<>();
+		try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			new WindowScanner(
+				channel,
+				splices,
+				this.pattern,
+				this.replacement,
+				this.replaceAll,
+				this.charset,
+				this.encodedLength,
+				maxMatchSpan).scan();
+		}
+		return splices;
+	}
+	
+	/**
+	 * Decodes all bytes of the channel into the (large enough) buffer window by window and flips it.
+	 */
+	protected static void decodeMapped(
+		final FileChannel channel,
+		final long size,
+		final long windowSize,
+		final CharsetDecoder decoder,
+		final CharBuffer chars) throws IOException
+	{
+		decoder.reset();
+		long position = 0;
+		boolean endOfInput;
+		do
+		{
+			final long length = Math.min(windowSize, size - position);
+			endOfInput = position + length == size;
+			final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			try
+			{
+				final CoderResult result = decoder.decode(window, chars, endOfInput);
+				if(result.isError())
+				{
+					result.throwException();
+				}
+				// The bytes of a character that is split by the end of the window are mapped again
+				position += window.position();
+			}
+			finally
+			{
+				MappedBuffers.unmap(window);
+			}
+		}
+		while(!endOfInput);
+		
+		final CoderResult result = decoder.flush(chars);
+		if(result.isError())
+		{
+			result.throwException();
+		}
+		chars.flip();
+	}
+	
+	/**
+	 * Decodes all bytes into the (large enough) buffer and flips it.
+	 */
+	protected static void decode(final CharsetDecoder decoder, final ByteBuffer bytes, final CharBuffer chars)
+		throws CharacterCodingException
+	{
+		decoder.reset();
+		CoderResult result = decoder.decode(bytes, chars, true);
+		if(!result.isError())
+		{
+			result = decoder.flush(chars);
+		}
+		if(result.isError())
+		{
+			result.throwException();
+		}
+		chars.flip();
+	}
+	
+	/**
+	 * Matches each line of the file separately. Lines are terminated by <code>\n</code>, <code>\r\n</code> or
+	 * <code>\r</code> - like {@link java.io.BufferedReader#readLine()}.
+	 * <p>
+	 * The file is read until the first match if only the first match should be replaced.
+	 * </p>
+	 *
+	 * @throws CharacterCodingException if a line can't be decoded using the charset
+	 */
+	public List<Splice> findLineBased(final Path file) throws IOException
+	{
+		final List<Splice> splices = new ArrayList<>();
+		try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			new LineScanner(channel, splices).scan();
+		}
+		return splices;
+	}
+	
+	/**
+	 * @param matcher    reset to the text
+	 * @param byteOffset the position of the text inside the file
+	 * @return <code>false</code> if no further replacements should be made
+	 */
+	protected boolean addSplices(
+		final Matcher matcher,
+		final CharSequence text,
+		final long byteOffset,
+		final List<Splice> splices)
+	{
+		int charPosition = 0;
+		long bytePosition = byteOffset;
+		while(matcher.find())
+		{
+			bytePosition += this.encodedLength.of(text, charPosition, matcher.start());
+			final long end = bytePosition + this.encodedLength.of(text, matcher.start(), matcher.end());
+			splices.add(new Splice(bytePosition, end, this.replacement.expand(matcher).getBytes(this.charset)));
+			
+			bytePosition = end;
+			charPosition = matcher.end();
+			if(!this.replaceAll)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Splits the bytes of a file into lines and matches each decoded line.
+	 */
+	protected class LineScanner
+	{
+		private final FileChannel channel;
+		private final List<Splice> splices;
+		private final CharsetDecoder decoder = SpliceFinder.this.charset.newDecoder();
+		private final Matcher matcher = SpliceFinder.this.pattern.matcher("");
+		private ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+		private CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+		// Position of the first byte of the buffer inside the file
+		private long bufferOffset;
+		
+		protected LineScanner(final FileChannel channel, final List<Splice> splices)
+		{
+			this.channel = channel;
+			this.splices = splices;
+		}
+		
+		protected void scan() throws IOException
+		{
+			boolean eof = false;
+			while(!eof)
+			{
+				eof = this.channel.read(this.bytes) < 0;
+				this.bytes.flip();
+				
+				final int lineStart = this.scanLines(eof);
+				if(lineStart < 0)
+				{
+					// No further replacements
+					return;
+				}
+				if(eof)
+				{
+					if(lineStart < this.bytes.limit())
+					{
+						this.matchLine(lineStart, this.bytes.limit());
+					}
+					return;
+				}
+				
+				// Keep the incomplete line
+				this.bytes.position(lineStart);
+				this.bytes.compact();
+				this.bufferOffset += lineStart;
+				if(!this.bytes.hasRemaining())
+				{
+					// The line is longer than the buffer
+					final ByteBuffer larger = ByteBuffer.allocate(this.bytes.capacity() * 2);
+					this.bytes.flip();
+					larger.put(this.bytes);
+					this.bytes = larger;
+				}
+			}
+		}
+		
+		/**
+		 * @return the start of the incomplete last line or <code>-1</code> if no further replacements should be made
+		 */
+		private int scanLines(final boolean eof) throws CharacterCodingException
+		{
+			final int limit = this.bytes.limit();
+			int lineStart = 0;
+			for(int i = 0; i < limit; i++)
+			{
+				final byte b = this.bytes.get(i);
+				if(b != '\n' && b != '\r')
+				{
+					continue;
+				}
+				if(b == '\r' && i + 1 == limit && !eof)
+				{
+					// Might be followed by \n
+					break;
+				}
+				
+				if(!this.matchLine(lineStart, i))
+				{
+					return -1;
+				}
+				if(b == '\r' && i + 1 < limit && this.bytes.get(i + 1) == '\n')
+				{
+					i++;
+				}
+				lineStart = i + 1;
+			}
+			return lineStart;
+		}
+		
+		/**
+		 * @return <code>false</code> if no further replacements should be made
+		 */
+		private boolean matchLine(final int from, final int to) throws CharacterCodingException
+		{
+			final ByteBuffer line = this.bytes.duplicate();
+			line.limit(to).position(from);
+			
+			final int maxChars = (int)Math.ceil((to - from) * (double)this.decoder.maxCharsPerByte());
+			if(this.chars.capacity() < maxChars)
+			{
+				this.chars = CharBuffer.allocate(maxChars);
+			}
+			this.chars.clear();
+			decode(this.decoder, line, this.chars);
+			
+			return SpliceFinder.this.addSplices(
+				this.matcher.reset(this.chars),
+				this.chars,
+				this.bufferOffset + from,
+				this.splices);
+		}
+	}
+}
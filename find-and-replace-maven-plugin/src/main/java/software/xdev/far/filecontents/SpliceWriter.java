@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Writes a file by copying the unchanged ranges of the original file and only writing the replaced bytes.
+ * <p>
+ * The unchanged ranges are copied with <code>FileChannel#transferTo</code>, which - depending on the operating
+ * system - doesn't copy the data through the JVM at all.
+ * </p>
+ */
+public final class SpliceWriter
+{
+	private SpliceWriter()
+	{
+	}
+	
+	/**
+	 * @param splices sorted by their position and not overlapping
+	 */
+	public static void write(final Path source, final Path target, final List<Splice> splices) throws IOException
+	{
+		try(final FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+			final FileChannel out = FileChannel.open(
+				target,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			long position = 0;
+			for(final Splice splice : splices)
+			{
+				transfer(in, position, splice.start() - position, out);
+				final ByteBuffer replacement = ByteBuffer.wrap(splice.replacement());
+				while(replacement.hasRemaining())
+				{
+					out.write(replacement);
+				}
+				position = splice.end();
+			}
+			// Tail after the last replacement
+			transfer(in, position, in.size() - position, out);
+		}
+	}
+	
+	/**
+	 * @return if all replacements have the same length as the bytes they replace, so that they can be written
+	 * directly into the original file
+	 */
+	public static boolean isLengthPreserving(final List<Splice> splices)
+	{
+		return splices.stream().allMatch(SpliceWriter::isLengthPreserving);
+	}
+	
+	private static boolean isLengthPreserving(final Splice splice)
+	{
+		return splice.end() - splice.start() == splice.replacement().length;
+	}
+	
+	/**
+	 * @return the splices without those that replace bytes with the same bytes
+	 */
+	public static List<Splice> withoutNoOps(final Path file, final List<Splice> splices) throws IOException
+	{
+		// Only replacements with the same length can be a no-op
+		if(splices.stream().noneMatch(SpliceWriter::isLengthPreserving))
+		{
+			return splices;
+		}
+		
+		final List<Splice> changing = new ArrayList<>(splices.size());
+		try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			for(final Splice splice : splices)
+			{
+				if(!isLengthPreserving(splice) || !Arrays.equals(read(channel, file, splice), splice.replacement()))
+				{
+					changing.add(splice);
+				}
+			}
+		}
+		return changing;
+	}
+	
+	/**
+	 * Writes the replacements directly into the file at their positions.
+	 *
+	 * @param splices length preserving
+	 * @see #isLengthPreserving(List)
+	 */
+	public static void patch(final Path file, final List<Splice> splices) throws IOException
+	{
+		try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+		{
+			for(final Splice splice : splices)
+			{
+				final ByteBuffer replacement = ByteBuffer.wrap(splice.replacement());
+				while(replacement.hasRemaining())
+				{
+					channel.write(replacement, splice.start() + replacement.position());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return the patches that restore the current contents of the file after the given patches were written
+	 */
+	public static List<Splice> readOriginal(final Path file, final List<Splice> patches) throws IOException
+	{
+		final List<Splice> original = new ArrayList<>(patches.size());
+		try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			for(final Splice patch : patches)
+			{
+				original.add(new Splice(patch.start(), patch.end(), read(channel, file, patch)));
+			}
+		}
+		return original;
+	}
+	
+	/**
+	 * @return the bytes of the file in the range of the splice
+	 */
+	private static byte[] read(final FileChannel channel, final Path file, final Splice splice) throws IOException
+	{
+		final ByteBuffer bytes = ByteBuffer.allocate((int)(splice.end() - splice.start()));
+		while(bytes.hasRemaining())
+		{
+			if(channel.read(bytes, splice.start() + bytes.position()) < 0)
+			{
+				throw new IOException("File was truncated while reading " + file);
+			}
+		}
+		return bytes.array();
+	}
+	
+	private static void transfer(final FileChannel in, final long position, final long count, final FileChannel out)
+		throws IOException
+	{
+		long transferred = 0;
+		while(transferred < count)
+		{
+			final long n = in.transferTo(position + transferred, count - transferred, out);
+			if(n <= 0)
+			{
+				throw new IOException("Source file was truncated while copying");
+			}
+			transferred += n;
+		}
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Replaces original files with staged (temporary) files or writes patches into them.
+ * <p>
+ * Each file is replaced by an atomic move (if supported by the file system), so it's never missing or half written.
+ * Files that are hard linked are overwritten instead, as replacing them would detach them from their other links -
+ * like patched files they may be half written if the process is killed while writing.
+ * </p>
+ * <p>
+ * Files can also be collected with {@link #add(Path, ReplacedContents)} and replaced together with
+ * {@link #commit()}: The contents of the staged files should already be synced to disk ({@link #sync(Path)}), the
+ * directories and patched files are synced once at the end and if replacing a file fails, all files replaced so far
+ * are restored. The backups for this are stored next to the originals ({@link Backup#SUFFIX}) and remain if the
+ * process is killed while committing. As they may be the only copy of the original contents, existing backups are
+ * never overwritten: Committing fails before any file is changed.
+ * </p>
+ * <p>
+ * Not thread-safe.
+ * </p>
+ */
+public class StagedCommit
+{
+	private final List<Staged> staged = new ArrayList<>();
+	
+	/**
+	 * @param tempFile contains the new contents of the original file; must be in the same directory
+	 */
+	public void add(final Path original, final Path tempFile)
+	{
+		this.add(original, ReplacedContents.inTempFile(tempFile));
+	}
+	
+	public void add(final Path original, final ReplacedContents contents)
+	{
+		this.staged.add(new Staged(original, contents));
+	}
+	
+	/**
+	 * @return the original files that were added
+	 */
+	public List<Path> originals()
+	{
+		return this.staged.stream().map(Staged::original).toList();
+	}
+	
+	/**
+	 * Replaces all added files. If this fails, all files are restored and the exception is rethrown.
+	 */
+	public void commit() throws IOException
+	{
+		final List<Backup> backups = new ArrayList<>();
+		try
+		{
+			checkNoLeftoverBackups(this.staged);
+			for(final Staged s : this.staged)
+			{
+				apply(s, backups);
+			}
+			syncAll(this.staged);
+		}
+		catch(final IOException | RuntimeException e)
+		{
+			rollback(backups, e);
+			throw e;
+		}
+		finally
+		{
+			this.discard();
+		}
+		
+		for(final Backup b : backups)
+		{
+			b.delete();
+		}
+	}
+	
+	/**
+	 * Fails if a backup of an earlier commit - e.g. of a killed build - still exists, as it may contain the only copy
+	 * of the original contents.
+	 */
+	protected static void checkNoLeftoverBackups(final List<Staged> staged) throws IOException
+	{
+		for(final Staged s : staged)
+		{
+			if(!s.contents().isPatch())
+			{
+				Backup.checkNoLeftover(s.original());
+			}
+		}
+	}
+	
+	/**
+	 * Creates a backup of the original file (added to the list before the file is changed) and replaces it.
+	 */
+	protected static void apply(final Staged staged, final List<Backup> backups) throws IOException
+	{
+		final Path original = staged.original();
+		if(staged.contents().isPatch())
+		{
+			final List<Splice> patches = staged.contents().patches();
+			backups.add(Backup.ofPatches(original, SpliceWriter.readOriginal(original, patches)));
+			SpliceWriter.patch(original, patches);
+			return;
+		}
+		
+		// Checked before the backup is created - it may be a link to the original
+		final boolean inPlace = isHardLinked(original);
+		backups.add(Backup.create(original, inPlace));
+		replace(original, staged.contents().tempFile(), inPlace);
+	}
+	
+	/**
+	 * Deletes the staged files that were not committed.
+	 */
+	public void discard() throws IOException
+	{
+		for(final Staged s : this.staged)
+		{
+			if(!s.contents().isPatch())
+			{
+				Files.deleteIfExists(s.contents().tempFile());
+			}
+		}
+	}
+	
+	/**
+	 * Replaces the original file with the temp file or writes the patches into it.
+	 */
+	public static void replace(final Path original, final ReplacedContents contents) throws IOException
+	{
+		if(contents.isPatch())
+		{
+			SpliceWriter.patch(original, contents.patches());
+		}
+		else
+		{
+			replace(original, contents.tempFile());
+		}
+	}
+	
+	/**
+	 * Replaces the original file with the temp file.
+	 */
+	public static void replace(final Path original, final Path tempFile) throws IOException
+	{
+		replace(original, tempFile, isHardLinked(original));
+	}
+	
+	/**
+	 * @param inPlace overwrite the contents of the original file instead of replacing it
+	 */
+	protected static void replace(final Path original, final Path tempFile, final boolean inPlace)
+		throws IOException
+	{
+		if(inPlace)
+		{
+			// Replacing the file would detach it from its other links - overwrite the contents instead
+			try(final OutputStream out = Files.newOutputStream(original))
+			{
+				Files.copy(tempFile, out);
+			}
+			Files.delete(tempFile);
+			return;
+		}
+		
+		move(tempFile, original);
+	}
+	
+	/**
+	 * Moves the file atomically (if supported) and replaces the target.
+	 */
+	protected static void move(final Path source, final Path target) throws IOException
+	{
+		try
+		{
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch(final AtomicMoveNotSupportedException e)
+		{
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	protected static boolean isHardLinked(final Path path) throws IOException
+	{
+		try
+		{
+			return ((Number)Files.getAttribute(path, "unix:nlink")).intValue() > 1;
+		}
+		catch(final UnsupportedOperationException | IllegalArgumentException e)
+		{
+			// Link count is not available on this file system
+			return false;
+		}
+	}
+	
+	/**
+	 * Syncs the contents of the file to disk.
+	 */
+	public static void sync(final Path file) throws IOException
+	{
+		try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+		{
+			channel.force(true);
+		}
+	}
+	
+	/**
+	 * Syncs the patched files and the directories of the replaced files.
+	 */
+	protected static void syncAll(final List<Staged> staged) throws IOException
+	{
+		final Set<Path> directories = new LinkedHashSet<>();
+		for(final Staged s : staged)
+		{
+			if(s.contents().isPatch())
+			{
+				sync(s.original());
+			}
+			else
+			{
+				directories.add(s.original().toAbsolutePath().getParent());
+			}
+		}
+		for(final Path directory : directories)
+		{
+			try(final FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ))
+			{
+				channel.force(true);
+			}
+			catch(final IOException e)
+			{
+				// Directories can't be opened or synced on some platforms (e.g. Windows)
+			}
+		}
+	}
+	
+	protected static void rollback(final List<Backup> backups, final Exception cause)
+	{
+		for(int i = backups.size() - 1; i >= 0; i--)
+		{
+			try
+			{
+				backups.get(i).restore();
+			}
+			catch(final IOException | RuntimeException e)
+			{
+				cause.addSuppressed(e);
+			}
+		}
+	}
+	
+	protected record Staged(Path original, ReplacedContents contents)
+	{
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Matches a file in chunks using a sliding window, so that the required memory is bounded by the size of the window
+ * instead of the size of the file.
+ * <p>
+ * Matches that are at most <code>maxMatchSpan</code> characters long are found exactly like when matching the whole
+ * file at once. Longer matches may be cut off or missed.<br/>
+ * Up to <code>maxMatchSpan</code> characters before the searched part of the window are kept, so that e.g.
+ * lookbehinds, <code>^</code> and <code>\b</code> still see the preceding text.
+ * </p>
+ * <p>
+ * Not thread-safe: Create a new instance for each file.
+ * </p>
+ */
+public class WindowScanner
+{
+	protected static final int CHUNK_SIZE = 64 * 1024;
+	
+	private final FileChannel channel;
+	private final List<Splice> splices;
+	private final Replacement replacement;
+	private final boolean replaceAll;
+	private final Charset charset;
+	private final EncodedLength encodedLength;
+	private final int maxMatchSpan;
+	
+	private final Matcher matcher;
+	private final CharsetDecoder decoder;
+	private final ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+	private final char[] window;
+	private int length;
+	private boolean inputConsumed;
+	private boolean eof;
+	// If no more characters fit into the window
+	private boolean full;
+	
+	// Absolute position of the first character of the window
+	private long windowCharOffset;
+	// Byte position inside the file of the character at countedChars - used to convert positions incrementally
+	private int countedChars;
+	private long countedBytes;
+	// Absolute position of the last empty match - so that it isn't found again after sliding the window
+	private long lastEmptyMatch = -1;
+	
+	@SuppressWarnings("checkstyle:ParameterNumber")
+	public WindowScanner(
+		final FileChannel channel,
+		final List<Splice> splices,
+		final Pattern pattern,
+		final Replacement replacement,
+		final boolean replaceAll,
+		final Charset charset,
+		final EncodedLength encodedLength,
+		final int maxMatchSpan)
+	{
+		this.channel = channel;
+		this.splices = splices;
+		this.replacement = replacement;
+		this.replaceAll = replaceAll;
+		this.charset = charset;
+		this.encodedLength = encodedLength;
+		this.maxMatchSpan = maxMatchSpan;
+		
+		this.matcher = pattern.matcher("");
+		this.decoder = charset.newDecoder();
+		// Room for a chunk, the longest match and the text before it
+		this.window = new char[CHUNK_SIZE + 2 * maxMatchSpan];
+	}
+	
+	public void scan() throws IOException
+	{
+		this.fill();
+		this.resetMatcher(0);
+		while(true)
+		{
+			final boolean found = this.matcher.find();
+			if(found && this.isRepeatedEmptyMatch() || this.slideIfMoreInputIsNeeded(found))
+			{
+				continue;
+			}
+			
+			if(!found)
+			{
+				if(this.eof)
+				{
+					return;
+				}
+				this.slide(this.length);
+			}
+			else if(!this.addSplice())
+			{
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * A match might start before the end of the window that can only be found with more input.
+	 *
+	 * @return if the window was moved and the search has to be repeated
+	 */
+	private boolean slideIfMoreInputIsNeeded(final boolean found) throws IOException
+	{
+		if(this.eof || !this.matcher.hitEnd() && !(found && this.matcher.requireEnd()))
+		{
+			return false;
+		}
+		final int keepFrom = Math.max(this.matcher.regionStart(), this.length - this.maxMatchSpan);
+		// If the window can't be moved the match is longer than the window
+		return this.slide(found ? Math.min(this.matcher.start(), keepFrom) : keepFrom);
+	}
+	
+	private boolean isRepeatedEmptyMatch()
+	{
+		return this.matcher.start() == this.matcher.end()
+			&& this.windowCharOffset + this.matcher.start() == this.lastEmptyMatch;
+	}
+	
+	/**
+	 * @return <code>false</code> if no further replacements should be made
+	 */
+	private boolean addSplice()
+	{
+		final long start = this.byteOffsetOf(this.matcher.start());
+		final long end = this.byteOffsetOf(this.matcher.end());
+		this.splices.add(new Splice(start, end, this.replacement.expand(this.matcher).getBytes(this.charset)));
+		if(this.matcher.start() == this.matcher.end())
+		{
+			this.lastEmptyMatch = this.windowCharOffset + this.matcher.start();
+		}
+		// Continue after the match when sliding the window
+		final int nextSearch = this.matcher.end();
+		this.matcher.region(nextSearch, this.length);
+		this.skipEmptyMatchAt(nextSearch);
+		return this.replaceAll;
+	}
+	
+	/**
+	 * A new region resets the matcher: Like Matcher#find the next match must not be the same empty match.
+	 */
+	private void skipEmptyMatchAt(final int position)
+	{
+		if(this.lastEmptyMatch == this.windowCharOffset + position && position < this.length)
+		{
+			this.matcher.region(position + 1, this.length);
+		}
+	}
+	
+	/**
+	 * Removes the characters that are no longer needed from the start of the window and reads more.
+	 *
+	 * @param keepFrom where the next search starts
+	 * @return <code>false</code> if nothing could be read because the window is full
+	 */
+	private boolean slide(final int keepFrom) throws IOException
+	{
+		// Keep some text before the search start, e.g. for lookbehinds
+		final int drop = keepFrom - Math.min(this.maxMatchSpan, keepFrom);
+		if(drop == 0 && this.full)
+		{
+			return false;
+		}
+		
+		this.countedBytes = this.byteOffsetOf(drop);
+		this.countedChars = 0;
+		System.arraycopy(this.window, drop, this.window, 0, this.length - drop);
+		this.length -= drop;
+		this.windowCharOffset += drop;
+		
+		this.fill();
+		this.resetMatcher(keepFrom - drop);
+		return true;
+	}
+	
+	private void resetMatcher(final int searchFrom)
+	{
+		this.matcher.reset(CharBuffer.wrap(this.window, 0, this.length))
+			// Only the real start and end of the file are anchors
+			.useAnchoringBounds(false)
+			.useTransparentBounds(true)
+			.region(searchFrom, this.length);
+		this.skipEmptyMatchAt(searchFrom);
+	}
+	
+	private void fill() throws IOException
+	{
+		final CharBuffer out = CharBuffer.wrap(this.window, this.length, this.window.length - this.length);
+		this.full = false;
+		while(!this.eof && out.hasRemaining())
+		{
+			if(!this.inputConsumed)
+			{
+				this.inputConsumed = this.channel.read(this.bytes) < 0;
+			}
+			this.bytes.flip();
+			CoderResult result = this.decoder.decode(this.bytes, out, this.inputConsumed);
+			this.bytes.compact();
+			if(this.inputConsumed && result.isUnderflow())
+			{
+				result = this.decoder.flush(out);
+				this.eof = result.isUnderflow();
+			}
+			if(result.isError())
+			{
+				result.throwException();
+			}
+			if(result.isOverflow())
+			{
+				this.full = true;
+				break;
+			}
+		}
+		this.full |= !out.hasRemaining();
+		this.length = out.position();
+	}
+	
+	/**
+	 * @param index inside the window
+	 * @return the position of the character inside the file
+	 */
+	private long byteOffsetOf(final int index)
+	{
+		final CharSequence text = CharBuffer.wrap(this.window, 0, this.length);
+		if(index >= this.countedChars)
+		{
+			this.countedBytes += this.encodedLength.of(text, this.countedChars, index);
+		}
+		else
+		{
+			this.countedBytes -= this.encodedLength.of(text, index, this.countedChars);
+		}
+		this.countedChars = index;
+		return this.countedBytes;
+	}
+}
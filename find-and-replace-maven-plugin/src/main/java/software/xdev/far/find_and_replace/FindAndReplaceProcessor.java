@@ -106,6 +106,10 @@ public class FindAndReplaceProcessor extends BaseProcessor<FindAndReplaceExecDat
 		{
 			throw new UncheckedIOException(e);
 		}
+		finally
+		{
+			this.invalidateCachedListings(file.toPath());
+		}
 	}
 	
 	protected Path createTempFile(final File original) throws IOException
@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class DirectoryCacheTest
+{
+	@TempDir
+	Path tempDir;
+	
+	private final AtomicInteger reads = new AtomicInteger();
+	
+	private List<DirectoryCache.CachedEntry> read(final Path directory) throws IOException
+	{
+		this.reads.incrementAndGet();
+		try(final var stream = Files.list(directory))
+		{
+			return stream.map(p -> new DirectoryCache.CachedEntry(p, null)).toList();
+		}
+	}
+	
+	private Path createDirectoryModifiedInThePast(final String name) throws IOException
+	{
+		final Path directory = Files.createDirectory(this.tempDir.resolve(name));
+		Files.createFile(directory.resolve("file"));
+		Files.setLastModifiedTime(directory, FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+		return directory;
+	}
+	
+	@Test
+	void testUnchangedDirectoryIsReused() throws IOException
+	{
+		final DirectoryCache cache = new DirectoryCache(DirectoryCache.DEFAULT_MAX_DIRECTORIES);
+		final Path directory = this.createDirectoryModifiedInThePast("dir");
+		
+		final List<DirectoryCache.CachedEntry> first = cache.list(directory, true, this::read);
+		final List<DirectoryCache.CachedEntry> second = cache.list(directory, true, this::read);
+		
+		assertEquals(1, this.reads.get());
+		assertSame(first, second);
+		
+		// Different link handling results in different attributes
+		cache.list(directory, false, this::read);
+		assertEquals(2, this.reads.get());
+	}
+	
+	@Test
+	void testModifiedDirectoryIsListedAgain() throws IOException
+	{
+		final DirectoryCache cache = new DirectoryCache(DirectoryCache.DEFAULT_MAX_DIRECTORIES);
+		final Path directory = this.createDirectoryModifiedInThePast("dir");
+		cache.list(directory, true, this::read);
+		
+		Files.createFile(directory.resolve("other"));
+		
+		assertEquals(2, cache.list(directory, true, this::read).size());
+		// Modified just now: Not cached as further changes might not change the modification time
+		cache.list(directory, true, this::read);
+		assertEquals(3, this.reads.get());
+	}
+	
+	@Test
+	void testInvalidate() throws IOException
+	{
+		final DirectoryCache cache = new DirectoryCache(DirectoryCache.DEFAULT_MAX_DIRECTORIES);
+		final Path parent = this.createDirectoryModifiedInThePast("parent");
+		final Path child = Files.createDirectory(parent.resolve("child"));
+		Files.setLastModifiedTime(child, FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+		Files.setLastModifiedTime(parent, FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+		cache.list(parent, true, this::read);
+		cache.list(child, true, this::read);
+		assertEquals(2, cache.size());
+		
+		// The parent's listing contains the changed child
+		cache.invalidate(child);
+		
+		assertEquals(0, cache.size());
+	}
+	
+	@Test
+	void testInvalidateDirectoryRemovesListingsBelow() throws IOException
+	{
+		final DirectoryCache cache = new DirectoryCache(DirectoryCache.DEFAULT_MAX_DIRECTORIES);
+		final Path sibling = this.createDirectoryModifiedInThePast("sibling");
+		final Path parent = this.createDirectoryModifiedInThePast("parent");
+		final Path child = Files.createDirectory(parent.resolve("child"));
+		Files.setLastModifiedTime(child, FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+		Files.setLastModifiedTime(parent, FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+		cache.list(sibling, true, this::read);
+		cache.list(parent, false, this::read);
+		cache.list(child, true, this::read);
+		
+		// A changed file only affects the listing of its directory
+		cache.invalidate(sibling.resolve("file"));
+		assertEquals(2, cache.size());
+		
+		// A renamed directory also affects all listings below it
+		cache.invalidate(parent, true);
+		assertEquals(0, cache.size());
+	}
+	
+	@Test
+	void testLeastRecentlyUsedIsEvicted() throws IOException
+	{
+		final DirectoryCache cache = new DirectoryCache(1);
+		final Path first = this.createDirectoryModifiedInThePast("first");
+		final Path second = this.createDirectoryModifiedInThePast("second");
+		
+		cache.list(first, true, this::read);
+		cache.list(second, true, this::read);
+		cache.list(first, true, this::read);
+		
+		assertEquals(1, cache.size());
+		assertEquals(3, this.reads.get());
+	}
+	
+	@Test
+	void testScopes()
+	{
+		assertNull(DirectoryCache.forScope(DirectoryCache.SCOPE_NONE, new Object()));
+		assertNull(DirectoryCache.forScope(DirectoryCache.SCOPE_SESSION, null));
+		
+		final Object session = new Object();
+		assertSame(
+			DirectoryCache.forScope(DirectoryCache.SCOPE_SESSION, session),
+			DirectoryCache.forScope(DirectoryCache.SCOPE_SESSION, session));
+		assertSame(
+			DirectoryCache.forScope(DirectoryCache.SCOPE_JVM, null),
+			DirectoryCache.forScope(DirectoryCache.SCOPE_JVM, session));
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+
+class ExclusionMatcherTest
+{
+	@Test
+	void testEmptyMatchesNothing()
+	{
+		final ExclusionMatcher matcher = new ExclusionMatcher(List.of());
+		
+		assertTrue(matcher.isEmpty());
+		assertFalse(matcher.matches("test-file.txt"));
+	}
+	
+	@Test
+	void testSyntaxes()
+	{
+		final ExclusionMatcher matcher = new ExclusionMatcher(List.of(
+			"regex:^ab+c",
+			"d.e",
+			"glob:*.yml",
+			"glob:build",
+			"glob:temp*",
+			"glob:file-?.{txt,md}",
+			"glob:[!a-c]x",
+			"prefix:."));
+		
+		assertTrue(matcher.matches("abbbc.txt"));
+		assertFalse(matcher.matches("xabc"));
+		assertTrue(matcher.matches("xdye"));
+		assertTrue(matcher.matches("config.yml"));
+		assertFalse(matcher.matches("config.yml.bak"));
+		assertTrue(matcher.matches("build"));
+		assertFalse(matcher.matches("builder"));
+		assertTrue(matcher.matches("temp-dir"));
+		assertTrue(matcher.matches("file-1.md"));
+		assertFalse(matcher.matches("file-12.md"));
+		assertTrue(matcher.matches("zx"));
+		assertFalse(matcher.matches("bx"));
+		assertTrue(matcher.matches(".git"));
+		assertFalse(matcher.matches("src"));
+	}
+	
+	@Test
+	void testSameResultAsSeparateRegexes()
+	{
+		this.assertSameResultAsSeparateRegexes(
+			List.of("(a)\\1", "^x", "y$", "[0-9]{3}", "a|b", "(?i)TEST"),
+			List.of("aa", "ab", "xa", "ay", "12", "123", "cc", "test", "Test.java", "aba"));
+	}
+	
+	@Test
+	void testRegexesThatConflictWhenCombined()
+	{
+		this.assertSameResultAsSeparateRegexes(
+			List.of("(?<v>a)b", "(?<v>c)d", "x\\Q)|", "(?x)e # comment", "f"),
+			List.of("ab", "cd", "x)|", "x", "e", "f", "z"));
+	}
+	
+	private void assertSameResultAsSeparateRegexes(final List<String> regexes, final List<String> names)
+	{
+		final ExclusionMatcher matcher = new ExclusionMatcher(regexes);
+		final List<Pattern> patterns = regexes.stream().map(Pattern::compile).toList();
+		
+		for(final String name : names)
+		{
+			assertEquals(
+				patterns.stream().anyMatch(p -> p.matcher(name).find()),
+				matcher.matches(name),
+				name);
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+class FileMaskMatcherTest
+{
+	@Test
+	void testNoMasksMatchesEverything()
+	{
+		final FileMaskMatcher matcher = new FileMaskMatcher(List.of());
+		
+		assertTrue(matcher.matches("test-file.txt"));
+		assertTrue(matcher.matches(""));
+	}
+	
+	@Test
+	void testOnlyFileNameIsMatched()
+	{
+		final FileMaskMatcher matcher = new FileMaskMatcher(List.of(".xml", "pom.xml", "test-file.txt"));
+		
+		assertTrue(matcher.matches("a" + File.separator + "test-file.txt"));
+		assertTrue(matcher.matches("a" + File.separator + "b.xml"));
+		assertFalse(matcher.matches("a.xml" + File.separator + "b"));
+		assertFalse(matcher.matches("a" + File.separator + "xml"));
+	}
+	
+	@Test
+	void testSameResultAsEndsWith()
+	{
+		final List<String> masks = List.of(".java", ".xml", ".properties", "Api.java", ".yml", ".yaml", ".json", "x");
+		final FileMaskMatcher matcher = new FileMaskMatcher(masks);
+		
+		final String[] suffixes = {".java", ".xml", ".txt", ".JAVA", "ml", ".properties", ".yaml", "x", ""};
+		final Random random = new Random(0);
+		for(int i = 0; i < 100_000; i++)
+		{
+			final String name = "File" + Integer.toHexString(random.nextInt()) + suffixes[i % suffixes.length];
+			
+			assertEquals(masks.stream().anyMatch(name::endsWith), matcher.matches(name), name);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+class IgnoreRulesTest
+{
+	@Test
+	void testBlankAndComments()
+	{
+		assertNull(IgnoreRules.parse(""));
+		assertNull(IgnoreRules.parse("   "));
+		assertNull(IgnoreRules.parse("# comment"));
+	}
+	
+	@Test
+	void testPatterns()
+	{
+		assertMatches("*.log", "a.log", "dir/a.log");
+		assertNotMatches("*.log", "a.logs", "dir.log/a");
+		
+		assertMatches("/build", "build");
+		assertNotMatches("/build", "dir/build");
+		
+		assertMatches("doc/*.txt", "doc/a.txt");
+		assertNotMatches("doc/*.txt", "doc/sub/a.txt", "other/doc/a.txt");
+		
+		assertMatches("**/node_modules", "node_modules", "a/b/node_modules");
+		assertMatches("a/**/b", "a/b", "a/x/b", "a/x/y/b");
+		assertMatches("abc/**", "abc/x", "abc/x/y");
+		assertNotMatches("abc/**", "abc");
+		
+		assertMatches("\\#file", "#file");
+		assertMatches("file\\ ", "file ");
+		assertMatches("file  ", "file");
+	}
+	
+	@Test
+	void testFlags()
+	{
+		final IgnoreRules.Rule negated = IgnoreRules.parse("!keep.txt");
+		assertTrue(negated.negated());
+		assertFalse(negated.directoryOnly());
+		
+		final IgnoreRules.Rule directoryOnly = IgnoreRules.parse("target/");
+		assertFalse(directoryOnly.negated());
+		assertTrue(directoryOnly.directoryOnly());
+		assertTrue(directoryOnly.pattern().matcher("sub/target").matches());
+	}
+	
+	private static void assertMatches(final String line, final String... paths)
+	{
+		final IgnoreRules.Rule rule = IgnoreRules.parse(line);
+		for(final String path : paths)
+		{
+			assertTrue(rule.pattern().matcher(path).matches(), line + " should match " + path);
+		}
+	}
+	
+	private static void assertNotMatches(final String line, final String... paths)
+	{
+		final IgnoreRules.Rule rule = IgnoreRules.parse(line);
+		for(final String path : paths)
+		{
+			assertFalse(rule.pattern().matcher(path).matches(), line + " should not match " + path);
+		}
+	}
+}
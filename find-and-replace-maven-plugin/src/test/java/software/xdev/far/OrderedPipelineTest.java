@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+
+class OrderedPipelineTest
+{
+	private static final int TASKS = 10_000;
+	
+	@Test
+	void testFailureStopsRemainingTasks()
+	{
+		final UncheckedIOException failure = new UncheckedIOException(new IOException("Failed to read"));
+		final AtomicInteger started = new AtomicInteger();
+		final AtomicInteger committed = new AtomicInteger();
+		final AtomicInteger discarded = new AtomicInteger();
+		
+		try(final OrderedPipeline pipeline = new OrderedPipeline(2))
+		{
+			pipeline.<Integer>submit(
+				() -> {
+					throw failure;
+				},
+				r -> committed.incrementAndGet(),
+				r -> discarded.incrementAndGet());
+			
+			final UncheckedIOException thrown = assertThrows(UncheckedIOException.class, () -> {
+				// Submitting fails as soon as the failure is noticed - like when walking the directories
+				for(int i = 0; i < TASKS; i++)
+				{
+					pipeline.submit(
+						started::incrementAndGet,
+						r -> committed.incrementAndGet(),
+						r -> discarded.incrementAndGet());
+				}
+				pipeline.finish();
+			});
+			assertSame(failure, thrown);
+		}
+		
+		// Results after the failed task are never committed
+		assertEquals(0, committed.get());
+		assertTrue(started.get() < TASKS, "Remaining tasks were not skipped");
+	}
+	
+	@Test
+	void testErrorInCommitDoesNotBlockSubmitting()
+	{
+		final StackOverflowError failure = new StackOverflowError("Commit failed");
+		final AtomicInteger committed = new AtomicInteger();
+		final AtomicInteger discarded = new AtomicInteger();
+		
+		assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+			try(final OrderedPipeline pipeline = new OrderedPipeline(2))
+			{
+				pipeline.submit(
+					() -> 0,
+					r -> {
+						throw failure;
+					},
+					r -> discarded.incrementAndGet());
+				
+				final StackOverflowError thrown = assertThrows(StackOverflowError.class, () -> {
+					// Much more than fits into the queue: Only works if the committer keeps draining it
+					for(int i = 0; i < TASKS; i++)
+					{
+						pipeline.submit(
+							() -> 1,
+							r -> committed.incrementAndGet(),
+							r -> discarded.incrementAndGet());
+					}
+					pipeline.finish();
+				});
+				assertSame(failure, thrown);
+			}
+		});
+		
+		assertEquals(0, committed.get());
+		assertTrue(discarded.get() > 0, "Failed result was not discarded");
+	}
+}
@@ -160,4 +160,24 @@ class DirectoryNamesMojoTest extends BaseMojoTest<DirectoryNamesMojo>
 		
 		assertTrue(Files.exists(expectedSecondDirPath));
 	}
+	
+	@Test
+	void testDirectoryNamesRecursiveExclusionsPruned() throws IOException
+	{
+		final Path firstDir = Files.createDirectory(Paths.get(this.runningTestsPath.toString(), "test-top-directory"));
+		final String secondDirName = "test-sub-directory";
+		Files.createDirectories(Paths.get(firstDir.toString(), secondDirName));
+		
+		this.mojo.setFindRegex("-");
+		this.mojo.setReplaceValue("_");
+		this.mojo.setExclusions("-top-");
+		this.mojo.setPruneExcludedDirectories(true);
+		this.mojo.setRecursive(true);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertTrue(Files.exists(firstDir));
+		
+		assertTrue(Files.exists(Paths.get(firstDir.toString(), secondDirName)));
+	}
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+class AhoCorasickTest
+{
+	@Test
+	void testLeftmostLongest()
+	{
+		assertEquals(List.of("0:ab", "2:cd"), this.search(List.of("ab", "abcdX", "cd"), "abcdY"));
+		assertEquals(List.of("0:abcd"), this.search(List.of("bc", "abcd", "a"), "abcd"));
+		assertEquals(List.of("0:a", "1:bc"), this.search(List.of("bc", "abcX", "a"), "abcd"));
+		assertEquals(List.of("1:he", "4:she"), this.search(List.of("he", "she", "hers"), "ahe she"));
+		assertEquals(List.of("0:aa", "2:aa"), this.search(List.of("a", "aa"), "aaaa"));
+		assertEquals(List.of(), this.search(List.of("x"), "abc"));
+	}
+	
+	@Test
+	void testSameResultAsNaiveSearch()
+	{
+		final Random random = new Random(42);
+		for(int run = 0; run < 500; run++)
+		{
+			final List<String> keys = new ArrayList<>();
+			for(int k = 1 + random.nextInt(6); k > 0; k--)
+			{
+				final String key = randomText(random, 1 + random.nextInt(4));
+				if(!keys.contains(key))
+				{
+					keys.add(key);
+				}
+			}
+			final String text = randomText(random, random.nextInt(40));
+			
+			assertEquals(naiveSearch(keys, text), this.search(keys, text), keys + " in " + text);
+		}
+	}
+	
+	private List<String> search(final List<String> keys, final String text)
+	{
+		final AhoCorasick automaton = new AhoCorasick(keys);
+		final List<String> matches = new ArrayList<>();
+		final AhoCorasick.Searcher searcher = automaton.newSearcher((start, key) -> {
+			matches.add(start + ":" + keys.get(key));
+			return true;
+		});
+		for(int i = 0; i < text.length(); i++)
+		{
+			searcher.next(text.charAt(i));
+		}
+		searcher.finish();
+		return matches;
+	}
+	
+	private static List<String> naiveSearch(final List<String> keys, final String text)
+	{
+		final List<String> matches = new ArrayList<>();
+		int i = 0;
+		while(i < text.length())
+		{
+			String longest = null;
+			for(final String key : keys)
+			{
+				if(text.startsWith(key, i) && (longest == null || key.length() > longest.length()))
+				{
+					longest = key;
+				}
+			}
+			if(longest == null)
+			{
+				i++;
+				continue;
+			}
+			matches.add(i + ":" + longest);
+			i += longest.length();
+		}
+		return matches;
+	}
+	
+	private static String randomText(final Random random, final int length)
+	{
+		final StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < length; i++)
+		{
+			sb.append((char)('a' + random.nextInt(3)));
+		}
+		return sb.toString();
+	}
+}
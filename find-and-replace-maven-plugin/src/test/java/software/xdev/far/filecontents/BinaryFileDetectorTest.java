@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class BinaryFileDetectorTest
+{
+	@TempDir
+	Path tempDir;
+	
+	private final BinaryFileDetector detector = new BinaryFileDetector();
+	
+	@Test
+	void testText() throws IOException
+	{
+		final Path file = this.tempDir.resolve("a.txt");
+		Files.writeString(file, "äöü € 😀", StandardCharsets.UTF_8);
+		
+		assertFalse(this.detector.isBinary(file, StandardCharsets.UTF_8));
+		assertTrue(this.detector.isBinary(file, StandardCharsets.US_ASCII));
+		assertFalse(this.detector.isBinary(file, StandardCharsets.ISO_8859_1));
+	}
+	
+	@Test
+	void testNulOnlyAllowedInCharsetsThatUseIt() throws IOException
+	{
+		final Path file = this.tempDir.resolve("a.txt");
+		Files.writeString(file, "asdf", StandardCharsets.UTF_16LE);
+		
+		assertFalse(this.detector.isBinary(file, StandardCharsets.UTF_16LE));
+		assertTrue(this.detector.isBinary(file, StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	void testMagicNumber() throws IOException
+	{
+		final Path file = this.tempDir.resolve("a.png");
+		Files.write(file, new byte[]{(byte)0x89, 'P', 'N', 'G', '\r', '\n'});
+		
+		assertTrue(this.detector.isBinary(file, StandardCharsets.ISO_8859_1));
+	}
+	
+	@Test
+	void testIncompleteSequenceAtEndOfSniffedBlock() throws IOException
+	{
+		final byte[] euro = "€".getBytes(StandardCharsets.UTF_8);
+		final byte[] contents = new byte[BinaryFileDetector.SNIFF_SIZE + 2];
+		Arrays.fill(contents, (byte)'a');
+		System.arraycopy(euro, 0, contents, BinaryFileDetector.SNIFF_SIZE - 1, euro.length);
+		final Path file = this.tempDir.resolve("a.txt");
+		Files.write(file, contents);
+		
+		assertFalse(this.detector.isBinary(file, StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	void testResultIsCachedUntilFileChanges() throws IOException
+	{
+		final Path file = this.tempDir.resolve("a.txt");
+		Files.writeString(file, "asdf");
+		final FileTime modified = FileTime.from(Instant.parse("2024-01-01T00:00:00Z"));
+		Files.setLastModifiedTime(file, modified);
+		assertFalse(this.detector.isBinary(file, StandardCharsets.UTF_8));
+		
+		Files.write(file, new byte[]{'a', 0, 'd', 'f'});
+		Files.setLastModifiedTime(file, modified);
+		assertFalse(this.detector.isBinary(file, StandardCharsets.UTF_8));
+		
+		Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2024-01-02T00:00:00Z")));
+		assertTrue(this.detector.isBinary(file, StandardCharsets.UTF_8));
+	}
+}
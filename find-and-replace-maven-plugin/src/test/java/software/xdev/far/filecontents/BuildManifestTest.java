@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class BuildManifestTest
+{
+	private static final byte[] FINGERPRINT = new byte[32];
+	
+	@TempDir
+	Path tempDir;
+	
+	@Test
+	void testUnchanged() throws IOException
+	{
+		final Path file = this.write("file.txt", "abc");
+		this.saveManifest(FINGERPRINT, file);
+		
+		final BuildManifest manifest = BuildManifest.load(this.manifestFile(), this.tempDir, FINGERPRINT);
+		assertTrue(manifest.isUnchanged(file));
+		assertFalse(manifest.isUnchanged(this.tempDir.resolve("other.txt")));
+		
+		Files.writeString(file, "abcd");
+		assertFalse(manifest.isUnchanged(file));
+	}
+	
+	@Test
+	void testContentUnchangedWithNewModificationTime() throws IOException
+	{
+		final Path file = this.write("file.txt", "abc");
+		this.saveManifest(FINGERPRINT, file);
+		Files.setLastModifiedTime(file, FileTime.from(Instant.now().plus(1, ChronoUnit.HOURS)));
+		
+		final BuildManifest manifest = BuildManifest.load(this.manifestFile(), this.tempDir, FINGERPRINT);
+		assertFalse(manifest.isUnchanged(file));
+		assertTrue(manifest.isContentUnchanged(file, Files.size(file)));
+		
+		Files.writeString(file, "abd");
+		assertFalse(manifest.isContentUnchanged(file, Files.size(file)));
+	}
+	
+	@Test
+	void testOtherFingerprint() throws IOException
+	{
+		final Path file = this.write("file.txt", "abc");
+		this.saveManifest(FINGERPRINT, file);
+		
+		final byte[] other = FINGERPRINT.clone();
+		other[0] = 1;
+		assertFalse(BuildManifest.load(this.manifestFile(), this.tempDir, other).isUnchanged(file));
+	}
+	
+	@Test
+	void testCorruptManifest() throws IOException
+	{
+		final Path file = this.write("file.txt", "abc");
+		this.saveManifest(FINGERPRINT, file);
+		final byte[] bytes = Files.readAllBytes(this.manifestFile());
+		Files.write(this.manifestFile(), Arrays.copyOf(bytes, bytes.length - 4));
+		
+		assertFalse(BuildManifest.load(this.manifestFile(), this.tempDir, FINGERPRINT).isUnchanged(file));
+	}
+	
+	private void saveManifest(final byte[] fingerprint, final Path file) throws IOException
+	{
+		final BuildManifest manifest = BuildManifest.load(this.manifestFile(), this.tempDir, fingerprint);
+		manifest.recordUnchanged(file, Files.size(file));
+		manifest.save();
+	}
+	
+	private Path manifestFile()
+	{
+		return this.tempDir.resolve("manifests/test.manifest");
+	}
+	
+	private Path write(final String name, final String contents) throws IOException
+	{
+		return Files.writeString(this.tempDir.resolve(name), contents);
+	}
+}
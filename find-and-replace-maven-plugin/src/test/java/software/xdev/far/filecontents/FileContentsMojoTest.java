@@ -15,20 +15,34 @@
  */
 package software.xdev.far.filecontents;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.MalformedInputException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 
 import software.xdev.far.BaseMojoTest;
+import software.xdev.far.DirectoryCache;
 
 
 // CPD-OFF https://github.com/xdev-software/find-and-replace-maven-plugin/issues/5
@@ -70,6 +84,94 @@ class FileContentsMojoTest extends BaseMojoTest<FileContentsMojo>
 		assertFalse(this.fileContains(this.ymlTestFile.toFile(), "asdf"));
 	}
 	
+	@Test
+	void testFileContentsReplaceLineBasedNoMatchLeavesFileUntouched() throws IOException
+	{
+		final FileTime past = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+		Files.setLastModifiedTime(this.textTestFile, past);
+		final Object fileKey = Files.readAttributes(this.textTestFile, BasicFileAttributes.class).fileKey();
+		
+		this.mojo.setFindRegex("doesNotOccur");
+		this.mojo.setFileMask("test-file.txt");
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals(past, Files.getLastModifiedTime(this.textTestFile));
+		assertEquals(fileKey, Files.readAttributes(this.textTestFile, BasicFileAttributes.class).fileKey());
+	}
+	
+	@Test
+	void testFileContentsReplaceLineBasedKeepsLinesBeforeMatch() throws IOException
+	{
+		final Path file = Paths.get(this.runningTestsPath.toString(), "lines.txt");
+		Files.writeString(file, "first\nsecond\nasdf asdf\nlast");
+		
+		this.mojo.setFindRegex("asdf");
+		this.mojo.setReplaceValue("x");
+		this.mojo.setFileMask("lines.txt");
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals(List.of("first", "second", "x x", "last"), Files.readAllLines(file));
+	}
+	
+	@Test
+	void testFileContentsReplaceLineBasedFalseUsesEncoding() throws IOException
+	{
+		final Path file = Paths.get(this.runningTestsPath.toString(), "latin1.txt");
+		Files.writeString(file, "äöü asdf", StandardCharsets.ISO_8859_1);
+		
+		this.mojo.setFindRegex("asdf");
+		this.mojo.setReplaceValue("ß");
+		this.mojo.setFileMask("latin1.txt");
+		this.mojo.setEncoding("ISO-8859-1");
+		this.mojo.setReplaceLineBased(false);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals("äöü ß", Files.readString(file, StandardCharsets.ISO_8859_1));
+	}
+	
+	@Test
+	void testFileContentsReplaceLineBasedMalformedInput() throws IOException
+	{
+		final Path file = Paths.get(this.runningTestsPath.toString(), "malformed.txt");
+		Files.write(file, new byte[]{'a', 's', 'd', 'f', (byte)0xFF, '\n'});
+		
+		this.mojo.setFindRegex("asdf");
+		this.mojo.setReplaceValue("x");
+		this.mojo.setFileMask("malformed.txt");
+		this.mojo.setEncoding("UTF-8");
+		this.mojo.setSkipBinaryFiles(false);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertTrue(Files.readString(file, StandardCharsets.ISO_8859_1).startsWith("x"));
+	}
+	
+	@Test
+	void testFileContentsReplaceLineBasedFalseMemoryMapped() throws IOException
+	{
+		this.mojo.setFindRegex("[\\r|\\n|\\r\\n]*asdf[\\r|\\n|\\r\\n]*");
+		this.mojo.setFileMask("test-file.txt");
+		this.mojo.setReplaceLineBased(false);
+		this.mojo.setStrategy("memory-mapped");
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertFalse(this.fileContains(this.textTestFile.toFile(), "asdf"));
+		assertEquals(1, Files.readAllLines(this.textTestFile).size());
+	}
+	
+	@Test
+	void testFileContentsUnknownStrategy()
+	{
+		this.mojo.setFindRegex("asdf");
+		this.mojo.setStrategy("unknown");
+		
+		assertThrows(IllegalArgumentException.class, this.mojo::execute);
+	}
+	
 	@Test
 	void testFileContentsReplaceLineBasedFalse()
 	{
@@ -489,4 +591,279 @@ class FileContentsMojoTest extends BaseMojoTest<FileContentsMojo>
 		assertTrue(this.fileContains(testFileYmlMoved.toFile(), "asdf"));
 		assertTrue(this.fileContains(testFileTxtMoved.toFile(), "asdf"));
 	}
+	
+	@Test
+	void testFileContentsRecursiveIncludesExcludes() throws IOException
+	{
+		final Path firstDir = Files.createDirectory(Paths.get(this.runningTestsPath.toString(), "test-directory"));
+		final Path excludedDir = Files.createDirectory(Paths.get(firstDir.toString(), "node_modules"));
+		final Path testFileTxtMoved =
+			Files.copy(this.textTestFile, Paths.get(firstDir.toString(), this.textTestFile.toFile().getName()));
+		final Path testFileTxtExcluded =
+			Files.copy(this.textTestFile, Paths.get(excludedDir.toString(), this.textTestFile.toFile().getName()));
+		
+		this.mojo.setFindRegex("asdf");
+		final String replaceValue = "value successfully replaced";
+		this.mojo.setReplaceValue(replaceValue);
+		this.mojo.setRecursive(true);
+		this.mojo.setIncludes(List.of("**/*.txt"));
+		this.mojo.setExcludes(List.of("**/node_modules"));
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertTrue(this.fileContains(this.textTestFile.toFile(), replaceValue));
+		assertTrue(this.fileContains(testFileTxtMoved.toFile(), replaceValue));
+		assertFalse(this.fileContains(testFileTxtExcluded.toFile(), replaceValue));
+		assertFalse(this.fileContains(this.xmlTestFile.toFile(), replaceValue));
+	}
+	
+	@Test
+	void testFileContentsRecursiveRespectGitIgnore() throws IOException
+	{
+		final Path targetDir = Files.createDirectory(Paths.get(this.runningTestsPath.toString(), "target"));
+		final Path subDir = Files.createDirectory(Paths.get(this.runningTestsPath.toString(), "sub"));
+		final Path nestedDir = Files.createDirectory(Paths.get(subDir.toString(), "nested"));
+		Files.writeString(Paths.get(this.runningTestsPath.toString(), ".gitignore"), "target/\n*.txt\n!keep.txt\n");
+		Files.writeString(Paths.get(subDir.toString(), ".ignore"), "/local.xml\n");
+		
+		final Path ignoredInTarget = Files.copy(this.xmlTestFile, Paths.get(targetDir.toString(), "file.xml"));
+		final Path kept = Files.copy(this.textTestFile, Paths.get(subDir.toString(), "keep.txt"));
+		final Path ignoredLocal = Files.copy(this.xmlTestFile, Paths.get(subDir.toString(), "local.xml"));
+		final Path nestedLocal = Files.copy(this.xmlTestFile, Paths.get(nestedDir.toString(), "local.xml"));
+		
+		this.mojo.setFindRegex("asdf");
+		final String replaceValue = "value successfully replaced";
+		this.mojo.setReplaceValue(replaceValue);
+		this.mojo.setRecursive(true);
+		this.mojo.setRespectGitIgnore(true);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertFalse(this.fileContains(this.textTestFile.toFile(), replaceValue));
+		assertTrue(this.fileContains(this.xmlTestFile.toFile(), replaceValue));
+		assertFalse(this.fileContains(ignoredInTarget.toFile(), replaceValue));
+		assertTrue(this.fileContains(kept.toFile(), replaceValue));
+		assertFalse(this.fileContains(ignoredLocal.toFile(), replaceValue));
+		assertTrue(this.fileContains(nestedLocal.toFile(), replaceValue));
+	}
+	
+	/**
+	 * Sequential, parallel and using virtual threads (processed sequentially if they are not supported)
+	 */
+	@ParameterizedTest
+	@CsvSource({"1, false", "4, false", "1, true"})
+	void testFileContentsManyFiles(final int parallelism, final boolean virtualThreads) throws IOException
+	{
+		final List<Path> files = this.createManyTestFiles();
+		
+		this.mojo.setFindRegex("asdf");
+		final String replaceValue = "value successfully replaced";
+		this.mojo.setReplaceValue(replaceValue);
+		this.mojo.setRecursive(true);
+		this.mojo.setParallelism(parallelism);
+		this.mojo.setVirtualThreads(virtualThreads);
+		this.mojo.setMaxOpenFiles(8);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		for(final Path file : files)
+		{
+			assertTrue(this.fileContains(file.toFile(), replaceValue));
+			assertFalse(this.fileContains(file.toFile(), "asdf"));
+		}
+	}
+	
+	@ParameterizedTest
+	@CsvSource({"1, false", "4, false", "1, true"})
+	void testFileContentsFailurePropagates(final int parallelism, final boolean virtualThreads) throws IOException
+	{
+		final List<Path> files = this.createManyTestFiles();
+		// Can't be decoded when reading the whole file
+		Files.write(files.get(42), new byte[]{'a', 's', 'd', 'f', (byte)0xFF});
+		
+		// Not a literal - those are found without decoding
+		this.mojo.setFindRegex("as+df");
+		this.mojo.setReplaceValue("x");
+		this.mojo.setRecursive(true);
+		this.mojo.setReplaceLineBased(false);
+		this.mojo.setEncoding("UTF-8");
+		this.mojo.setSkipBinaryFiles(false);
+		this.mojo.setParallelism(parallelism);
+		this.mojo.setVirtualThreads(virtualThreads);
+		
+		final UncheckedIOException e = assertThrows(UncheckedIOException.class, this.mojo::execute);
+		assertInstanceOf(MalformedInputException.class, e.getCause());
+	}
+	
+	@Test
+	void testFileContentsParallelLogOrderMatchesSequential() throws IOException
+	{
+		// Two identical trees, so that both are listed in the same order
+		final Path sequentialDir = Files.createDirectory(Paths.get(this.runningTestsPath.toString(), "sequential"));
+		final Path parallelDir = Files.createDirectory(Paths.get(this.runningTestsPath.toString(), "parallel"));
+		this.createManyTestFiles(sequentialDir);
+		this.createManyTestFiles(parallelDir);
+		
+		final List<String> sequentialLog = this.executeAndRecordReplacedLog(sequentialDir, 1);
+		final List<String> parallelLog = this.executeAndRecordReplacedLog(parallelDir, 4);
+		
+		assertEquals(100, sequentialLog.size());
+		assertEquals(sequentialLog, parallelLog);
+	}
+	
+	@Test
+	void testFileContentsRecursiveLinksVisitedOnce() throws IOException
+	{
+		final Path baseDir = Files.createDirectory(Paths.get(this.runningTestsPath.toString(), "linked"));
+		final List<Path> files = this.createManyTestFiles(baseDir);
+		// A cycle and a second path to the same file
+		Files.createSymbolicLink(Paths.get(files.get(0).getParent().toString(), "loop"), baseDir);
+		Files.createLink(Paths.get(files.get(99).getParent().toString(), "hardlink.txt"), files.get(0));
+		
+		final List<String> log = this.executeAndRecordReplacedLog(baseDir, 4);
+		
+		assertEquals(100, log.size());
+		for(final Path file : files)
+		{
+			assertTrue(this.fileContains(file.toFile(), "value successfully replaced"));
+		}
+	}
+	
+	@Test
+	void testFileContentsRecursiveNoFollowLinks() throws IOException
+	{
+		final Path firstDir = Files.createDirectory(Paths.get(this.runningTestsPath.toString(), "test-directory"));
+		final Path linkedDir = Files.createDirectory(Paths.get(this.runningTestsPath.toString(), "linked-directory"));
+		final Path testFileTxtLinked =
+			Files.copy(this.textTestFile, Paths.get(linkedDir.toString(), this.textTestFile.toFile().getName()));
+		Files.createSymbolicLink(Paths.get(firstDir.toString(), "link"), linkedDir);
+		
+		this.mojo.setFindRegex("asdf");
+		final String replaceValue = "value successfully replaced";
+		this.mojo.setReplaceValue(replaceValue);
+		this.mojo.setBaseDir(firstDir.toString());
+		this.mojo.setRecursive(true);
+		this.mojo.setFollowLinks(false);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertFalse(this.fileContains(testFileTxtLinked.toFile(), replaceValue));
+	}
+	
+	@Test
+	void testFileContentsRecursiveMaxDepth() throws IOException
+	{
+		final Path firstDir = Files.createDirectory(Paths.get(this.runningTestsPath.toString(), "test-directory"));
+		final Path testFileTxtMoved =
+			Files.copy(this.textTestFile, Paths.get(firstDir.toString(), this.textTestFile.toFile().getName()));
+		
+		this.mojo.setFindRegex("asdf");
+		final String replaceValue = "value successfully replaced";
+		this.mojo.setReplaceValue(replaceValue);
+		this.mojo.setRecursive(true);
+		this.mojo.setMaxDepth(1);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertTrue(this.fileContains(this.textTestFile.toFile(), replaceValue));
+		assertFalse(this.fileContains(testFileTxtMoved.toFile(), replaceValue));
+	}
+	
+	@Test
+	void testFileContentsFileSizeRange() throws IOException
+	{
+		final Path tooSmall = Paths.get(this.runningTestsPath.toString(), "small.txt");
+		Files.writeString(tooSmall, "asdf");
+		final Path inRange = Paths.get(this.runningTestsPath.toString(), "medium.txt");
+		Files.writeString(inRange, "asdf" + " ".repeat(96));
+		final Path tooLarge = Paths.get(this.runningTestsPath.toString(), "large.txt");
+		Files.writeString(tooLarge, "asdf" + " ".repeat(997));
+		
+		this.mojo.setFindRegex("asdf");
+		this.mojo.setReplaceValue("x");
+		this.mojo.setFileMask("small.txt,medium.txt,large.txt");
+		this.mojo.setMinFileSize(5);
+		this.mojo.setMaxFileSize(1_000L);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertTrue(this.fileContains(tooSmall.toFile(), "asdf"));
+		assertFalse(this.fileContains(inRange.toFile(), "asdf"));
+		assertTrue(this.fileContains(tooLarge.toFile(), "asdf"));
+	}
+	
+	@Test
+	void testFileContentsDirectoryCacheMultipleExecutions() throws IOException
+	{
+		final List<Path> files = this.createManyTestFiles();
+		// Otherwise the listings would not be cached as the directories were modified just now
+		final FileTime past = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+		for(final Path file : files)
+		{
+			Files.setLastModifiedTime(file.getParent(), past);
+		}
+		Files.setLastModifiedTime(this.runningTestsPath, past);
+		
+		this.mojo.setFindRegex("asdf");
+		this.mojo.setReplaceValue("first");
+		this.mojo.setRecursive(true);
+		this.mojo.setDirectoryCache(DirectoryCache.SCOPE_JVM);
+		this.executeMojoAssertDoesNotThrow();
+		
+		this.mojo.setFindRegex("first");
+		this.mojo.setReplaceValue("second");
+		this.executeMojoAssertDoesNotThrow();
+		
+		for(final Path file : files)
+		{
+			assertTrue(this.fileContains(file.toFile(), "second"));
+			assertFalse(this.fileContains(file.toFile(), "first"));
+		}
+	}
+	
+	private List<String> executeAndRecordReplacedLog(final Path baseDir, final int parallelism)
+	{
+		final String logPrefix = "Replaced contents inside " + baseDir;
+		final List<String> log = new ArrayList<>();
+		
+		final FileContentsMojo recordingMojo = new FileContentsMojo();
+		recordingMojo.setBaseDir(baseDir.toString());
+		recordingMojo.setLog(new SystemStreamLog()
+		{
+			@Override
+			public void info(final CharSequence content)
+			{
+				if(content.toString().startsWith(logPrefix))
+				{
+					log.add(content.toString().substring(logPrefix.length()));
+				}
+			}
+		});
+		recordingMojo.setFindRegex("asdf");
+		recordingMojo.setReplaceValue("value successfully replaced");
+		recordingMojo.setRecursive(true);
+		recordingMojo.setParallelism(parallelism);
+		
+		assertDoesNotThrow(recordingMojo::execute);
+		return log;
+	}
+	
+	private List<Path> createManyTestFiles() throws IOException
+	{
+		return this.createManyTestFiles(this.runningTestsPath);
+	}
+	
+	private List<Path> createManyTestFiles(final Path root) throws IOException
+	{
+		final List<Path> files = new ArrayList<>();
+		for(int i = 0; i < 10; i++)
+		{
+			final Path dir = Files.createDirectory(Paths.get(root.toString(), "test-directory-" + i));
+			for(int j = 0; j < 10; j++)
+			{
+				files.add(Files.copy(this.textTestFile, Paths.get(dir.toString(), "test-file-" + j + ".txt")));
+			}
+		}
+		return files;
+	}
 }
@@ -0,0 +1,417 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+
+import software.xdev.far.BaseMojoTest;
+import software.xdev.far.DirectoryCache;
+
+
+/**
+ * Tests how the contents of the files are searched and written.
+ */
+class FileContentsReplacementMojoTest extends BaseMojoTest<FileContentsMojo>
+{
+	public FileContentsReplacementMojoTest()
+	{
+		super(FileContentsMojo::new);
+	}
+	
+	@Test
+	void testFileContentsNoOpReplacementLeavesFileUntouched() throws IOException
+	{
+		final Path file = Paths.get(this.runningTestsPath.toString(), "noop.txt");
+		Files.writeString(file, "version=1.2.3\nother=4.5\n");
+		final FileTime past = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+		Files.setLastModifiedTime(file, past);
+		this.mojo.setFileMask("noop.txt");
+		
+		// Spliced into the original bytes
+		this.mojo.setFindRegex("(\\d+)\\.(\\d+)");
+		this.mojo.setReplaceValue("$1.$2");
+		this.executeMojoAssertDoesNotThrow();
+		assertEquals(past, Files.getLastModifiedTime(file));
+		
+		// Decoded line by line
+		this.mojo.setFindRegex(null);
+		this.mojo.setRules(List.of(new Rule("1", "1"), new Rule("=", "=")));
+		this.executeMojoAssertDoesNotThrow();
+		assertEquals(past, Files.getLastModifiedTime(file));
+		
+		// Decoded as a whole
+		this.mojo.setReplaceLineBased(false);
+		this.executeMojoAssertDoesNotThrow();
+		assertEquals(past, Files.getLastModifiedTime(file));
+		
+		assertEquals("version=1.2.3\nother=4.5\n", Files.readString(file));
+	}
+	
+	@Test
+	void testFileContentsRequiredLiteral() throws IOException
+	{
+		final Path generated = Paths.get(this.runningTestsPath.toString(), "Generated.java");
+		Files.writeString(generated, "@jakarta.annotation.Generated(\"x\")\nclass A {}\n");
+		final Path other = Paths.get(this.runningTestsPath.toString(), "Other.java");
+		Files.writeString(other, "@jakarta.annotation.Nonnull\nclass B {}\n");
+		
+		this.mojo.setFindRegex("^@jakarta\\.annotation\\.Generated.*(\\r?\\n)");
+		this.mojo.setReplaceValue("");
+		this.mojo.setFileMask(".java");
+		this.mojo.setReplaceLineBased(false);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals("class A {}\n", Files.readString(generated));
+		assertEquals("@jakarta.annotation.Nonnull\nclass B {}\n", Files.readString(other));
+	}
+	
+	@Test
+	void testFileContentsBinaryFilesSkipped() throws IOException
+	{
+		final byte[] binary = {(byte)0xCA, (byte)0xFE, (byte)0xBA, (byte)0xBE, 0, 'a', 's', 'd', 'f', '\n'};
+		final Path classFile = Paths.get(this.runningTestsPath.toString(), "A.class");
+		Files.write(classFile, binary);
+		final Path textFile = Paths.get(this.runningTestsPath.toString(), "A.txt");
+		Files.writeString(textFile, "asdf\n");
+		
+		this.mojo.setFindRegex("asdf");
+		this.mojo.setReplaceValue("x");
+		this.mojo.setFileMask("A.class,A.txt");
+		final List<String> infos = new ArrayList<>();
+		this.mojo.setLog(new SystemStreamLog()
+		{
+			@Override
+			public void info(final CharSequence content)
+			{
+				infos.add(content.toString());
+			}
+		});
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertArrayEquals(binary, Files.readAllBytes(classFile));
+		assertEquals("x\n", Files.readString(textFile));
+		// Visible without debug logging
+		assertTrue(infos.stream().anyMatch(i -> i.startsWith("Skipped 1 binary file(s)")), infos::toString);
+	}
+	
+	@Test
+	void testFileContentsReplaceLineBasedFalseChunked() throws IOException
+	{
+		final Path file = Paths.get(this.runningTestsPath.toString(), "minified.js");
+		Files.writeString(file, "var a=1;/* remove\nme */var b=2;".repeat(10_000));
+		
+		this.mojo.setFindRegex("/\\*[^*]*\\*/");
+		this.mojo.setReplaceValue("");
+		this.mojo.setFileMask("minified.js");
+		this.mojo.setReplaceLineBased(false);
+		this.mojo.setStrategy("chunked");
+		this.mojo.setMaxMatchSpan(100);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals("var a=1;var b=2;".repeat(10_000), Files.readString(file));
+	}
+	
+	@Test
+	void testFileContentsAutoStrategyLargeFile() throws IOException
+	{
+		final Path file = Paths.get(this.runningTestsPath.toString(), "large.txt");
+		final String line = "value=asssdf;\r\n";
+		final int lines = (int)(ReplaceStrategy.AUTO_IN_MEMORY_MAX_SIZE / line.length()) + 1;
+		Files.writeString(file, line.repeat(lines));
+		
+		this.mojo.setFindRegex("a(s+)df;$");
+		this.mojo.setReplaceValue("$1");
+		this.mojo.setFileMask("large.txt");
+		this.mojo.setEncoding("UTF-8");
+		this.mojo.setReplaceLineBased(false);
+		this.mojo.setStrategy("auto");
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals("value=sss\r\n".repeat(lines), Files.readString(file));
+	}
+	
+	@Test
+	void testFileContentsTransactional() throws IOException
+	{
+		final Path first = Paths.get(this.runningTestsPath.toString(), "first.txt");
+		Files.writeString(first, "asdf\n");
+		final Path second = Paths.get(this.runningTestsPath.toString(), "second.txt");
+		Files.writeString(second, "asdf asdf\n");
+		
+		this.mojo.setFindRegex("asdf");
+		this.mojo.setReplaceValue("x");
+		this.mojo.setFileMask("first.txt,second.txt");
+		this.mojo.setTransactional(true);
+		this.mojo.setParallelism(2);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals("x\n", Files.readString(first));
+		assertEquals("x x\n", Files.readString(second));
+		try(final var files = Files.list(this.runningTestsPath))
+		{
+			assertTrue(files.noneMatch(p -> p.getFileName().toString().endsWith(Backup.SUFFIX)));
+		}
+	}
+	
+	@Test
+	void testFileContentsInPlace() throws IOException
+	{
+		final Path patched = Paths.get(this.runningTestsPath.toString(), "patched.properties");
+		Files.writeString(patched, "version=1.2.3\nother=1.2.3\n");
+		final Object fileKey = Files.readAttributes(patched, BasicFileAttributes.class).fileKey();
+		final Path replaced = Paths.get(this.runningTestsPath.toString(), "replaced.txt");
+		Files.writeString(replaced, "version=1.2.3\n");
+		
+		this.mojo.setFindRegex("1\\.2\\.3");
+		this.mojo.setReplaceValue("1.2.40");
+		this.mojo.setFileMask("replaced.txt");
+		this.mojo.setInPlace(true);
+		this.executeMojoAssertDoesNotThrow();
+		
+		this.mojo.setReplaceValue("1.2.4");
+		this.mojo.setFileMask("patched.properties");
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals("version=1.2.40\n", Files.readString(replaced));
+		assertEquals("version=1.2.4\nother=1.2.4\n", Files.readString(patched));
+		// Written into the same file instead of replacing it
+		assertEquals(fileKey, Files.readAttributes(patched, BasicFileAttributes.class).fileKey());
+	}
+	
+	@Test
+	void testFileContentsIncremental() throws IOException
+	{
+		final Path file = Paths.get(this.runningTestsPath.toString(), "incremental.txt");
+		Files.writeString(file, "a\n");
+		
+		this.mojo.setFindRegex("a");
+		this.mojo.setReplaceValue("aa");
+		this.mojo.setFileMask("incremental.txt");
+		this.mojo.setIncremental(true);
+		this.mojo.setManifestDirectory(this.runningTestsPath.resolve("target").toString());
+		this.executeMojoAssertDoesNotThrow();
+		assertEquals("aa\n", Files.readString(file));
+		assertTrue(Files.exists(this.runningTestsPath.resolve("target/file-contents-default.manifest")));
+		
+		// Unchanged since the last run
+		this.executeMojoAssertDoesNotThrow();
+		assertEquals("aa\n", Files.readString(file));
+		
+		// Another configuration
+		this.mojo.setReplaceValue("ab");
+		this.executeMojoAssertDoesNotThrow();
+		assertEquals("abab\n", Files.readString(file));
+		
+		// Changed by someone else
+		Files.writeString(file, "a\n");
+		this.executeMojoAssertDoesNotThrow();
+		assertEquals("ab\n", Files.readString(file));
+	}
+	
+	@Test
+	void testFileContentsIncrementalWithDirectoryCache() throws IOException
+	{
+		final Path file = Paths.get(this.runningTestsPath.toString(), "incremental.txt");
+		Files.writeString(file, "x\n");
+		Files.createDirectories(this.runningTestsPath.resolve("target"));
+		// Otherwise the listing would not be cached as the directory was modified just now
+		final FileTime past = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+		Files.setLastModifiedTime(this.runningTestsPath, past);
+		
+		this.mojo.setFindRegex("a");
+		this.mojo.setReplaceValue("b");
+		this.mojo.setFileMask("incremental.txt");
+		this.mojo.setIncremental(true);
+		this.mojo.setManifestDirectory(this.runningTestsPath.resolve("target").toString());
+		this.mojo.setDirectoryCache(DirectoryCache.SCOPE_SESSION);
+		this.mojo.setSession(new MavenSession(
+			null,
+			new DefaultMavenExecutionRequest(),
+			new DefaultMavenExecutionResult(),
+			List.of()));
+		this.executeMojoAssertDoesNotThrow();
+		
+		// Modified in place: The cached listing still has the old attributes
+		Files.writeString(file, "a\n");
+		Files.setLastModifiedTime(file, FileTime.from(Instant.now().plus(1, ChronoUnit.HOURS)));
+		Files.setLastModifiedTime(this.runningTestsPath, past);
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals("b\n", Files.readString(file));
+	}
+	
+	@Test
+	void testFileContentsRulesAppliedInOrder() throws IOException
+	{
+		final Path file = Paths.get(this.runningTestsPath.toString(), "rules.txt");
+		Files.writeString(file, "a b\nb a\n");
+		
+		this.mojo.setFindRegex("a");
+		this.mojo.setReplaceValue("b");
+		this.mojo.setRules(List.of(new Rule("b", "c"), new Rule("c c", "d")));
+		this.mojo.setFileMask("rules.txt");
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals(List.of("d", "d"), Files.readAllLines(file));
+	}
+	
+	@Test
+	void testFileContentsRulesChunkedReadInMemoryWithWarning() throws IOException
+	{
+		final Path file = Paths.get(this.runningTestsPath.toString(), "rules.txt");
+		Files.writeString(file, "a b\nb a\n");
+		
+		this.mojo.setRules(List.of(new Rule("a", "b"), new Rule("b\\sb", "c")));
+		this.mojo.setReplaceLineBased(false);
+		this.mojo.setStrategy("chunked");
+		this.mojo.setFileMask("rules.txt");
+		final List<String> warnings = new ArrayList<>();
+		this.mojo.setLog(new SystemStreamLog()
+		{
+			@Override
+			public void warn(final CharSequence content)
+			{
+				warnings.add(content.toString());
+			}
+		});
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals("c\nc\n", Files.readString(file));
+		assertEquals(
+			List.of("The strategy chunked is not supported for multiple rules - files are read into memory instead"),
+			warnings);
+	}
+	
+	@Test
+	void testFileContentsRulesKeepLineTerminators() throws IOException
+	{
+		final Path file = Paths.get(this.runningTestsPath.toString(), "terminators.txt");
+		Files.writeString(file, "x\r\na b\rb\n\nlast a");
+		
+		this.mojo.setFindRegex("a");
+		this.mojo.setReplaceValue("b");
+		this.mojo.setRules(List.of(new Rule("^b$", "$0$0")));
+		this.mojo.setFileMask("terminators.txt");
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals("x\r\nb b\rbb\n\nlbst b", Files.readString(file));
+	}
+	
+	@Test
+	void testFileContentsRulesWithoutFindRegex() throws IOException
+	{
+		final Path generated = Paths.get(this.runningTestsPath.toString(), "Generated.java");
+		Files.writeString(generated, "@jakarta.annotation.Generated(\"x\")\n@SuppressWarnings(\"all\")\nclass A {}\n");
+		final Path other = Paths.get(this.runningTestsPath.toString(), "Other.java");
+		Files.writeString(other, "class B {}\n");
+		
+		final Rule replaceFirst = new Rule("class", "final class");
+		replaceFirst.setReplaceAll(false);
+		this.mojo.setRules(List.of(
+			new Rule("^@jakarta\\.annotation\\.Generated.*(\\r?\\n)", null),
+			new Rule("^@SuppressWarnings.*(\\r?\\n)", ""),
+			replaceFirst));
+		this.mojo.setFileMask(".java");
+		this.mojo.setReplaceLineBased(false);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals("final class A {}\n", Files.readString(generated));
+		assertEquals("final class B {}\n", Files.readString(other));
+	}
+	
+	@Test
+	void testFileContentsNoFindRegexAndNoRules()
+	{
+		assertThrows(IllegalArgumentException.class, this.mojo::execute);
+	}
+	
+	@Test
+	void testFileContentsMappingFileCsv() throws IOException
+	{
+		final Path mapping = Paths.get(this.runningTestsPath.toString(), "mapping.csv");
+		Files.writeString(mapping, "# old,new\ncom.old,com.new\ncom.old.api,org.api\nä,ae\n");
+		final Path file = Paths.get(this.runningTestsPath.toString(), "Imports.java");
+		Files.writeString(file, "import com.old.Foo;\nimport com.old.api.Bar; // ä\n");
+		
+		this.mojo.setMappingFile(mapping.toString());
+		this.mojo.setFileMask("Imports.java");
+		this.mojo.setEncoding("UTF-8");
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals("import com.new.Foo;\nimport org.api.Bar; // ae\n", Files.readString(file));
+	}
+	
+	@Test
+	void testFileContentsMappingFilePropertiesDecoded() throws IOException
+	{
+		final Path mapping = Paths.get(this.runningTestsPath.toString(), "mapping.properties");
+		Files.writeString(mapping, "first=1st\nsecond=2nd\n");
+		final Path file = Paths.get(this.runningTestsPath.toString(), "utf16.txt");
+		Files.writeString(file, "first, second, third", StandardCharsets.UTF_16);
+		
+		this.mojo.setMappingFile(mapping.toString());
+		this.mojo.setFileMask("utf16.txt");
+		this.mojo.setEncoding("UTF-16");
+		this.mojo.setReplaceAll(false);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertEquals("1st, second, third", Files.readString(file, StandardCharsets.UTF_16));
+	}
+	
+	@Test
+	void testFileContentsMappingFileWithFindRegex() throws IOException
+	{
+		final Path mapping = Paths.get(this.runningTestsPath.toString(), "mapping.csv");
+		Files.writeString(mapping, "a,b\n");
+		
+		this.mojo.setMappingFile(mapping.toString());
+		this.mojo.setFindRegex("asdf");
+		
+		assertThrows(IllegalArgumentException.class, this.mojo::execute);
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+
+class LineReaderTest
+{
+	@Test
+	void testTerminatorsAreKept() throws IOException
+	{
+		assertEquals(
+			List.of("a|\r\n", "b|\r\n", "|\n", "c|\r", "d|"),
+			readLines(new StringReader("a\r\nb\r\n\nc\rd")));
+	}
+	
+	@Test
+	void testTerminatorSplitAcrossReads() throws IOException
+	{
+		final String text = "first\r\n\r\rsecond\r" + "x".repeat(20_000) + "\r\n";
+		
+		assertEquals(readLines(new StringReader(text)), readLines(new OneCharReader(text)));
+		assertEquals(
+			List.of("first|\r\n", "|\r", "|\r", "second|\r", "x".repeat(20_000) + "|\r\n"),
+			readLines(new OneCharReader(text)));
+	}
+	
+	@Test
+	void testEmptyInput() throws IOException
+	{
+		assertEquals(List.of(), readLines(new StringReader("")));
+	}
+	
+	/**
+	 * @return each line with a | between the line and its terminator
+	 */
+	private static List<String> readLines(final Reader reader) throws IOException
+	{
+		final List<String> lines = new ArrayList<>();
+		try(final LineReader lineReader = new LineReader(reader))
+		{
+			while(lineReader.next())
+			{
+				final CharSequence text = lineReader.text();
+				lines.add(text.subSequence(lineReader.lineStart(), lineReader.lineEnd())
+					+ "|"
+					+ text.subSequence(lineReader.lineEnd(), lineReader.terminatorEnd()));
+			}
+		}
+		return lines;
+	}
+	
+	/**
+	 * Returns a single char on each read, so that terminators are split across reads.
+	 */
+	static class OneCharReader extends StringReader
+	{
+		OneCharReader(final String s)
+		{
+			super(s);
+		}
+		
+		@Override
+		public int read(final char[] cbuf, final int off, final int len) throws IOException
+		{
+			return super.read(cbuf, off, Math.min(1, len));
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+
+class LineSafePatternTest
+{
+	@Test
+	void testLineSafe()
+	{
+		assertTrue(isLineSafe("asdf"));
+		assertTrue(isLineSafe("^foo$"));
+		assertTrue(isLineSafe("a.b"));
+		assertTrue(isLineSafe("[a-z]+\\d"));
+		assertTrue(isLineSafe("\\bword\\b"));
+		assertTrue(isLineSafe("(?<name>x)\\k<name>"));
+		assertTrue(isLineSafe("(?i:abc)"));
+		assertTrue(isLineSafe("\\Q[^x]\\E"));
+		assertTrue(LineSafePattern.isLineSafe(Pattern.compile("a.b", Pattern.LITERAL)));
+	}
+	
+	@Test
+	void testNotLineSafe()
+	{
+		assertFalse(isLineSafe("a\\sb"));
+		assertFalse(isLineSafe("a\\nb"));
+		assertFalse(isLineSafe("a\nb"));
+		assertFalse(isLineSafe("[^x]+"));
+		assertFalse(isLineSafe("[\\t-z]"));
+		assertFalse(isLineSafe("\\x0A"));
+		assertFalse(isLineSafe("\\p{Space}"));
+		assertFalse(isLineSafe("(?s)a.b"));
+		assertFalse(isLineSafe("a(?=b)"));
+		assertFalse(isLineSafe("(?<!a)b"));
+		assertFalse(isLineSafe("\\Aa"));
+		// Would also match between \r and \n
+		assertFalse(isLineSafe("x*"));
+		
+		assertFalse(LineSafePattern.isLineSafe(Pattern.compile("a.b", Pattern.DOTALL)));
+		assertFalse(LineSafePattern.isLineSafe(Pattern.compile("a.b", Pattern.UNIX_LINES)));
+		assertFalse(LineSafePattern.isLineSafe(new CompiledRule(Pattern.compile("a"), "b\n", true)));
+	}
+	
+	private static boolean isLineSafe(final String regex)
+	{
+		return LineSafePattern.isLineSafe(Pattern.compile(regex, Pattern.MULTILINE));
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class LiteralFinderTest
+{
+	@TempDir
+	Path tempDir;
+	
+	@Test
+	void testLiteralOf()
+	{
+		assertEquals("asdf", LiteralFinder.literalOf(Pattern.compile("asdf")));
+		assertEquals("a.b(c)", LiteralFinder.literalOf(Pattern.compile("a\\.b\\(c\\)")));
+		assertEquals("a.*b", LiteralFinder.literalOf(Pattern.compile("\\Qa.*b\\E")));
+		assertEquals("x[y]z", LiteralFinder.literalOf(Pattern.compile("x\\Q[y]\\Ez")));
+		assertEquals("a+", LiteralFinder.literalOf(Pattern.compile("a+", Pattern.LITERAL)));
+		assertEquals("äöü €", LiteralFinder.literalOf(Pattern.compile("äöü €")));
+		
+		assertNull(LiteralFinder.literalOf(Pattern.compile("a.b")));
+		assertNull(LiteralFinder.literalOf(Pattern.compile("(as)df")));
+		assertNull(LiteralFinder.literalOf(Pattern.compile("a\\sb")));
+		assertNull(LiteralFinder.literalOf(Pattern.compile("^asdf")));
+		assertNull(LiteralFinder.literalOf(Pattern.compile("asdf", Pattern.CASE_INSENSITIVE)));
+	}
+	
+	@Test
+	void testSameResultAsMatcher() throws IOException
+	{
+		final String contents = "\uFEFFfirst asdf line\r\n"
+			+ "äöü € asdf 😀 asdf\n"
+			+ "asdfasdf\n"
+			+ "aasdasdfff asdf";
+		for(final String literal : List.of("asdf", "a", "€ a", "😀", "ff"))
+		{
+			this.assertSameResult(StandardCharsets.UTF_8, contents, literal, true);
+			this.assertSameResult(StandardCharsets.UTF_8, contents, literal, false);
+			this.assertSameResult(StandardCharsets.ISO_8859_1, "äöü asdf\r\nasdf", literal, true);
+		}
+		this.assertSameResult(StandardCharsets.UTF_8, "aaaaa", "aa", true);
+		this.assertSameResult(StandardCharsets.UTF_8, "no match", "asdf", true);
+	}
+	
+	@Test
+	void testMatchesAcrossBufferBoundaries() throws IOException
+	{
+		// Matches at every possible position relative to the end of the first buffer
+		final StringBuilder sb = new StringBuilder();
+		sb.append("x".repeat(LiteralFinder.BUFFER_SIZE - 12));
+		for(int i = 0; i < 8; i++)
+		{
+			sb.append("needle").append("x".repeat(i));
+		}
+		sb.append("x".repeat(LiteralFinder.BUFFER_SIZE)).append("needle");
+		
+		this.assertSameResult(StandardCharsets.UTF_8, sb.toString(), "needle", true);
+	}
+	
+	private void assertSameResult(
+		final Charset charset,
+		final String contents,
+		final String literal,
+		final boolean replaceAll) throws IOException
+	{
+		final Path source = Files.writeString(this.tempDir.resolve("source"), contents, charset);
+		final List<Splice> splices = new LiteralFinder(
+			literal.getBytes(charset),
+			"<✓>".getBytes(charset),
+			replaceAll).find(source);
+		
+		final Path target = this.tempDir.resolve("target");
+		SpliceWriter.write(source, target, splices);
+		
+		final Pattern pattern = Pattern.compile(literal, Pattern.LITERAL);
+		final String replaced = new String("<✓>".getBytes(charset), charset);
+		assertEquals(
+			replaceAll
+				? pattern.matcher(contents).replaceAll(replaced)
+				: pattern.matcher(contents).replaceFirst(replaced),
+			Files.readString(target, charset),
+			literal);
+	}
+}
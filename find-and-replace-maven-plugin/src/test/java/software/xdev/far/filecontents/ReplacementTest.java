@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+
+class ReplacementTest
+{
+	@Test
+	void testSameResultAsMatcher()
+	{
+		final Pattern pattern = Pattern.compile("(?<first>a)(b)?(c)(d)(e)(f)(g)(h)(i)(j)(k)");
+		final String text = "xxacdefghijkyy abcdefghijk";
+		for(final String replacement : List.of(
+			"", "literal", "$0", "$1$2", "$11", "$111", "${first}", "\\$1", "a\\\\b", "$2$1"))
+		{
+			final Matcher matcher = pattern.matcher(text);
+			final String expected = matcher.replaceAll(replacement);
+			
+			final Replacement compiled = Replacement.compile(replacement, pattern);
+			final StringBuilder actual = new StringBuilder();
+			int last = 0;
+			matcher.reset();
+			while(matcher.find())
+			{
+				actual.append(text, last, matcher.start()).append(compiled.expand(matcher));
+				last = matcher.end();
+			}
+			actual.append(text.substring(last));
+			
+			assertEquals(expected, actual.toString(), replacement);
+		}
+	}
+	
+	@Test
+	void testLiteral()
+	{
+		final Pattern pattern = Pattern.compile("(a)");
+		
+		assertTrue(Replacement.compile("abc", pattern).isLiteral());
+		assertTrue(Replacement.compile("\\$1", pattern).isLiteral());
+		assertFalse(Replacement.compile("$1", pattern).isLiteral());
+	}
+	
+	@Test
+	void testInvalid()
+	{
+		final Pattern pattern = Pattern.compile("(a)");
+		
+		assertThrows(IllegalArgumentException.class, () -> Replacement.compile("\\", pattern));
+		assertThrows(IllegalArgumentException.class, () -> Replacement.compile("$", pattern));
+		assertThrows(IllegalArgumentException.class, () -> Replacement.compile("$x", pattern));
+		assertThrows(IllegalArgumentException.class, () -> Replacement.compile("${a", pattern));
+		assertThrows(IndexOutOfBoundsException.class, () -> Replacement.compile("$2", pattern));
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+
+class RequiredLiteralTest
+{
+	@Test
+	void testRequiredLiteral()
+	{
+		assertEquals(
+			"@jakarta.annotation.Generated",
+			RequiredLiteral.of(Pattern.compile("^@jakarta\\.annotation\\.Generated.*(\\r?\\n)", Pattern.MULTILINE)));
+		assertEquals("asdf", RequiredLiteral.of(Pattern.compile("asdf")));
+		assertEquals("longer", RequiredLiteral.of(Pattern.compile("ab\\d+longer[x-z]*c")));
+		assertEquals("Value", RequiredLiteral.of(Pattern.compile("(get|set)Value")));
+		assertEquals("xa.*b", RequiredLiteral.of(Pattern.compile("x\\Qa.*b\\E")));
+		assertEquals("text", RequiredLiteral.of(Pattern.compile("texts?")));
+		assertEquals("texts", RequiredLiteral.of(Pattern.compile("texts+")));
+		assertEquals("abc", RequiredLiteral.of(Pattern.compile("abcd{0,2}")));
+		assertEquals("ab", RequiredLiteral.of(Pattern.compile("ab\\p{Lu}\\x41\\u0042")));
+		assertEquals("after", RequiredLiteral.of(Pattern.compile("[]abc][^]xyz]after")));
+		assertEquals("tail", RequiredLiteral.of(Pattern.compile("(?i:ignored)tail")));
+		assertEquals("äöü", RequiredLiteral.of(Pattern.compile("äöü😀?")));
+		assertEquals("a+b", RequiredLiteral.of(Pattern.compile("a+b", Pattern.LITERAL)));
+		
+		assertNull(RequiredLiteral.of(Pattern.compile("foo|bar")));
+		assertNull(RequiredLiteral.of(Pattern.compile("(?i)asdf")));
+		assertNull(RequiredLiteral.of(Pattern.compile("asdf", Pattern.CASE_INSENSITIVE)));
+		assertNull(RequiredLiteral.of(Pattern.compile("a?.*")));
+		assertNull(RequiredLiteral.of(Pattern.compile("")));
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class SpliceFinderTest
+{
+	private static final String CONTENTS = "\uFEFFfirst asdf line\r\n"
+		+ "äöü € asdf 😀 asdf\n"
+		+ "\n"
+		+ "lone\rcarriage asdf return\r"
+		+ "asdfasdf\n"
+		+ "no trailing line break asdf";
+	
+	@TempDir
+	Path tempDir;
+	
+	@Test
+	void testWholeFileSameResultAsMatcher() throws IOException
+	{
+		for(final String replacement : List.of("x", "", "longer replacement ✓", "$1-$1", "\\$"))
+		{
+			this.assertWholeFile(StandardCharsets.UTF_8, "(as)df", replacement, true);
+			this.assertWholeFile(StandardCharsets.UTF_8, "(as)df", replacement, false);
+		}
+		this.assertWholeFile(StandardCharsets.UTF_8, "(?m)$", "<", true);
+		this.assertWholeFile(StandardCharsets.UTF_8, "(?m)^", ">", true);
+		this.assertWholeFile(StandardCharsets.ISO_8859_1, "(as)df", "ÿ$1", true);
+	}
+	
+	@Test
+	void testMappedSameResultAsInMemory() throws IOException
+	{
+		final Path source = Files.writeString(this.tempDir.resolve("source"), CONTENTS.repeat(100));
+		final SpliceFinder finder = this.createFinder(StandardCharsets.UTF_8, "(as)df", "$1$1", true);
+		final CharBufferPool pool = new CharBufferPool(true);
+		
+		final String expected = this.write(source, finder.find(source), StandardCharsets.UTF_8);
+		
+		assertEquals(expected, this.write(source, finder.findMapped(source, pool), StandardCharsets.UTF_8));
+		// Reused buffer
+		assertEquals(expected, this.write(source, finder.findMapped(source, pool), StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	void testMappedWindowsSplitCharacters() throws IOException
+	{
+		final Path source = Files.writeString(this.tempDir.resolve("source"), CONTENTS.repeat(10));
+		final long size = Files.size(source);
+		
+		// Windows of 7 bytes split multibyte characters (e.g. the emoji has 4 bytes)
+		final CharBuffer chars = CharBuffer.allocate((int)size);
+		try(final FileChannel channel = FileChannel.open(source, StandardOpenOption.READ))
+		{
+			SpliceFinder.decodeMapped(channel, size, 7, StandardCharsets.UTF_8.newDecoder(), chars);
+		}
+		
+		assertEquals(CONTENTS.repeat(10), chars.toString());
+		assertTrue(MappedBuffers.isUnmapSupported());
+	}
+	
+	@Test
+	void testPoolKeepsOnlySmallBuffers() throws IOException
+	{
+		final CharBufferPool pool = new CharBufferPool(true, 100);
+		
+		final CharBuffer small = pool.acquire(100);
+		pool.release(small);
+		assertSame(small, pool.acquire(50));
+		
+		final CharBuffer large = pool.acquire(101);
+		pool.release(large);
+		assertNotSame(large, pool.acquire(101));
+	}
+	
+	@Test
+	void testChunkedSameResultAsInMemory() throws IOException
+	{
+		// Larger than a chunk, so that the window has to slide multiple times
+		final Path source = Files.writeString(this.tempDir.resolve("source"), CONTENTS.repeat(3_000));
+		for(final String regex : List.of(
+			"(as)df",
+			"(?m)^(asdf)",
+			"(?m)(line)\\r?\\n\\s*äöü",
+			"(?<=a)(s)",
+			"\\b(line)\\b",
+			"(?m)()$",
+			"(😀) (as)",
+			"(carriage) asdf return\\r(asdf)+\\n"))
+		{
+			for(final boolean replaceAll : List.of(true, false))
+			{
+				final SpliceFinder finder = this.createFinder(StandardCharsets.UTF_8, regex, "<$1>", replaceAll);
+				
+				assertEquals(
+					this.write(source, finder.find(source), StandardCharsets.UTF_8),
+					this.write(source, finder.findChunked(source, 100), StandardCharsets.UTF_8),
+					regex);
+			}
+		}
+	}
+	
+	@Test
+	void testChunkedMatchLongerThanWindow() throws IOException
+	{
+		final String contents = "a" + "b".repeat(WindowScanner.CHUNK_SIZE * 2) + "c";
+		final Path source = Files.writeString(this.tempDir.resolve("source"), contents);
+		final SpliceFinder finder = this.createFinder(StandardCharsets.UTF_8, "ab+", "x", true);
+		
+		// Cut off at the end of the window
+		final String replaced = this.write(source, finder.findChunked(source, 10), StandardCharsets.UTF_8);
+		assertTrue(replaced.startsWith("xbb"));
+		assertTrue(replaced.endsWith("bbc"));
+	}
+	
+	@Test
+	void testLineBasedPreservesLineTerminators() throws IOException
+	{
+		final String expected = CONTENTS.replace("asdf", "x");
+		
+		assertEquals(expected, this.spliceLineBased(StandardCharsets.UTF_8, "asdf", "x", true));
+		assertEquals(
+			CONTENTS.replaceFirst("asdf", "x"),
+			this.spliceLineBased(StandardCharsets.UTF_8, "asdf", "x", false));
+		// Matched against each line without its terminator
+		assertEquals(
+			CONTENTS.replaceAll("(?m)$", "<"),
+			this.spliceLineBased(StandardCharsets.UTF_8, "$", "<", true));
+	}
+	
+	@Test
+	void testLineBasedLongLines() throws IOException
+	{
+		final String line = "0123456789".repeat(SpliceFinder.BUFFER_SIZE / 4) + "asdf";
+		final String contents = line + "\r\n" + line + "\r" + line;
+		final Path source = Files.writeString(this.tempDir.resolve("source"), contents);
+		
+		final List<Splice> splices = this.createFinder(StandardCharsets.UTF_8, "asdf", "x", true)
+			.findLineBased(source);
+		
+		assertEquals(3, splices.size());
+		assertEquals(contents.replace("asdf", "x"), this.write(source, splices, StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	void testMalformedInputIsReported() throws IOException
+	{
+		final Path source = Files.write(this.tempDir.resolve("source"), new byte[]{'a', (byte)0xFF, '\n'});
+		final SpliceFinder finder = this.createFinder(StandardCharsets.UTF_8, "a", "b", true);
+		
+		assertThrows(MalformedInputException.class, () -> finder.findLineBased(source));
+	}
+	
+	@Test
+	void testNotSupportedCharsets()
+	{
+		assertEquals(EncodedLength.UTF_8, EncodedLength.forCharset(StandardCharsets.UTF_8));
+		assertEquals(EncodedLength.SINGLE_BYTE, EncodedLength.forCharset(StandardCharsets.ISO_8859_1));
+		assertEquals(null, EncodedLength.forCharset(StandardCharsets.UTF_16));
+		assertEquals(null, EncodedLength.forCharset(Charset.forName("IBM500")));
+	}
+	
+	private void assertWholeFile(
+		final Charset charset,
+		final String regex,
+		final String replacement,
+		final boolean replaceAll) throws IOException
+	{
+		final String contents = charset.equals(StandardCharsets.UTF_8) ? CONTENTS : "äöü asdf\r\nasdf";
+		final Path source = Files.writeString(this.tempDir.resolve("source"), contents, charset);
+		
+		final List<Splice> splices = this.createFinder(charset, regex, replacement, replaceAll).find(source);
+		
+		final String expected = replaceAll
+			? Pattern.compile(regex).matcher(contents).replaceAll(replacement)
+			: Pattern.compile(regex).matcher(contents).replaceFirst(replacement);
+		assertArrayEquals(
+			expected.getBytes(charset),
+			this.write(source, splices, charset).getBytes(charset),
+			regex + " -> " + replacement);
+	}
+	
+	private String spliceLineBased(
+		final Charset charset,
+		final String regex,
+		final String replacement,
+		final boolean replaceAll) throws IOException
+	{
+		final Path source = Files.writeString(this.tempDir.resolve("source"), CONTENTS, charset);
+		return this.write(
+			source,
+			this.createFinder(charset, regex, replacement, replaceAll).findLineBased(source),
+			charset);
+	}
+	
+	private String write(final Path source, final List<Splice> splices, final Charset charset) throws IOException
+	{
+		final Path target = this.tempDir.resolve("target");
+		SpliceWriter.write(source, target, splices);
+		return Files.readString(target, charset);
+	}
+	
+	private SpliceFinder createFinder(
+		final Charset charset,
+		final String regex,
+		final String replacement,
+		final boolean replaceAll)
+	{
+		final Pattern pattern = Pattern.compile(regex);
+		return new SpliceFinder(
+			pattern,
+			Replacement.compile(replacement, pattern),
+			replaceAll,
+			charset,
+			EncodedLength.forCharset(charset));
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2024 XDEV Software (https://xdev.software)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package software.xdev.far.filecontents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class StagedCommitTest
+{
+	@TempDir
+	Path tempDir;
+	
+	@Test
+	void testCommit() throws IOException
+	{
+		final Path first = this.write("first.txt", "old first");
+		final Path second = this.write("second.txt", "old second");
+		final StagedCommit commit = new StagedCommit();
+		commit.add(first, this.write("first.tmp", "new first"));
+		commit.add(second, this.write("second.tmp", "new second"));
+		
+		commit.commit();
+		
+		assertEquals("new first", Files.readString(first));
+		assertEquals("new second", Files.readString(second));
+		try(final var files = Files.list(this.tempDir))
+		{
+			assertEquals(
+				List.of("first.txt", "second.txt"),
+				files.map(Path::getFileName).map(Path::toString).sorted().toList());
+		}
+	}
+	
+	@Test
+	void testRollbackWhenReplacingFails() throws IOException
+	{
+		final Path first = this.write("first.txt", "old first");
+		final Path second = this.write("second.txt", "old second");
+		final Path third = this.write("third.txt", "old third");
+		final Path thirdTemp = this.write("third.tmp", "new third");
+		final StagedCommit commit = new StagedCommit();
+		commit.add(first, this.write("first.tmp", "new first"));
+		// Missing temp file
+		commit.add(second, this.tempDir.resolve("second.tmp"));
+		commit.add(third, thirdTemp);
+		
+		assertThrows(NoSuchFileException.class, commit::commit);
+		
+		assertEquals("old first", Files.readString(first));
+		assertEquals("old second", Files.readString(second));
+		assertEquals("old third", Files.readString(third));
+		assertFalse(Files.exists(thirdTemp));
+		assertEquals(List.of(first, second, third), commit.originals());
+		try(final var files = Files.list(this.tempDir))
+		{
+			assertEquals(
+				List.of("first.txt", "second.txt", "third.txt"),
+				files.map(Path::getFileName).map(Path::toString).sorted().toList());
+		}
+	}
+	
+	@Test
+	void testRollbackRestoresHardLinkedFile() throws IOException
+	{
+		final Path linked = this.write("linked.txt", "old");
+		final Path link = Files.createLink(this.tempDir.resolve("link.txt"), linked);
+		final StagedCommit commit = new StagedCommit();
+		commit.add(linked, this.write("linked.tmp", "new"));
+		commit.add(this.write("other.txt", "old"), this.tempDir.resolve("missing.tmp"));
+		
+		assertThrows(NoSuchFileException.class, commit::commit);
+		
+		assertEquals("old", Files.readString(linked));
+		assertEquals("old", Files.readString(link));
+	}
+	
+	@Test
+	void testRollbackRestoresPatchedFile() throws IOException
+	{
+		final Path patched = this.write("patched.txt", "version=1.2.3");
+		final StagedCommit commit = new StagedCommit();
+		commit.add(patched, ReplacedContents.patches(List.of(new Splice(12, 13, new byte[]{'4'}))));
+		commit.add(this.write("other.txt", "old"), this.tempDir.resolve("missing.tmp"));
+		
+		assertThrows(NoSuchFileException.class, commit::commit);
+		
+		assertEquals("version=1.2.3", Files.readString(patched));
+	}
+	
+	@Test
+	void testLeftoverBackupIsNotOverwritten() throws IOException
+	{
+		final Path first = this.write("first.txt", "old first");
+		final Path second = this.write("second.txt", "replaced by killed build");
+		// Left behind by a killed build: the only copy of the original
+		final Path backup = this.write("second.txt" + Backup.SUFFIX, "old second");
+		final Path firstTemp = this.write("first.tmp", "new first");
+		final Path secondTemp = this.write("second.tmp", "new second");
+		final StagedCommit commit = new StagedCommit();
+		commit.add(first, firstTemp);
+		commit.add(second, secondTemp);
+		
+		assertThrows(FileAlreadyExistsException.class, commit::commit);
+		
+		assertEquals("old second", Files.readString(backup));
+		assertEquals("old first", Files.readString(first));
+		assertEquals("replaced by killed build", Files.readString(second));
+		assertFalse(Files.exists(firstTemp));
+		assertFalse(Files.exists(secondTemp));
+	}
+	
+	@Test
+	void testCommitPatch() throws IOException
+	{
+		final Path patched = this.write("patched.txt", "version=1.2.3");
+		final StagedCommit commit = new StagedCommit();
+		commit.add(patched, ReplacedContents.patches(List.of(new Splice(12, 13, new byte[]{'4'}))));
+		
+		commit.commit();
+		
+		assertEquals("version=1.2.4", Files.readString(patched));
+	}
+	
+	private Path write(final String name, final String contents) throws IOException
+	{
+		return Files.writeString(this.tempDir.resolve(name), contents);
+	}
+}
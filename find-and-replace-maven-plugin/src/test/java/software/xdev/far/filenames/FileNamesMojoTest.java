@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
@@ -85,6 +86,51 @@ class FileNamesMojoTest extends BaseMojoTest<FileNamesMojo>
 		assertTrue(Files.exists(Paths.get(firstDir.toString(), "some-file-name")));
 	}
 	
+	@Test
+	void testFilenamesRecursiveWideDirectory() throws IOException
+	{
+		final Path firstDir = Files.createDirectory(Paths.get(this.runningTestsPath.toString(), "test-directory"));
+		for(int i = 0; i < 500; i++)
+		{
+			Files.createFile(Paths.get(firstDir.toString(), "some_file_name_" + i));
+		}
+		Files.createSymbolicLink(
+			Paths.get(firstDir.toString(), "broken_link"),
+			Paths.get(firstDir.toString(), "does_not_exist"));
+		
+		this.mojo.setFindRegex("_");
+		this.mojo.setReplaceValue("-");
+		this.mojo.setRecursive(true);
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		for(int i = 0; i < 500; i++)
+		{
+			assertTrue(Files.exists(Paths.get(firstDir.toString(), "some-file-name-" + i)));
+		}
+	}
+	
+	@Test
+	void testFilenamesRecursiveExclusionPatterns() throws IOException
+	{
+		final Path firstDir = Files.createDirectory(Paths.get(this.runningTestsPath.toString(), "test-directory"));
+		Files.createFile(Paths.get(this.runningTestsPath.toString(), "some_file_name.yml"));
+		Files.createFile(Paths.get(firstDir.toString(), "some_file_name"));
+		Files.createFile(Paths.get(firstDir.toString(), "other_file_name"));
+		
+		this.mojo.setFindRegex("_");
+		this.mojo.setReplaceValue("-");
+		this.mojo.setRecursive(true);
+		this.mojo.setExclusions("^other");
+		this.mojo.setExclusionPatterns(List.of("glob:*.yml"));
+		
+		this.executeMojoAssertDoesNotThrow();
+		
+		assertTrue(Files.exists(Paths.get(this.runningTestsPath.toString(), "some_file_name.yml")));
+		assertTrue(Files.exists(Paths.get(firstDir.toString(), "some-file-name")));
+		assertTrue(Files.exists(Paths.get(firstDir.toString(), "other_file_name")));
+	}
+	
 	@Test
 	void testFilenamesRecursiveReplaceFirst() throws IOException
 	{